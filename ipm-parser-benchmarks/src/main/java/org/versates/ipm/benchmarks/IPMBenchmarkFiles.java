@@ -0,0 +1,79 @@
+package org.versates.ipm.benchmarks;
+
+import org.versates.ipm.IPMWriter;
+import org.versates.ipm.helper.IPMGenerator;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.jpos.iso.ISOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Synthetic IPM files for the benchmarks, generated by an {@link IPMGenerator} with a fixed seed: a header, a mix of
+ * presentments (1240), chargebacks (1442) and fees (1740) in the proportion of 16, 3 and 1, and a trailer. EBCDIC
+ * files are RDW-framed and blocked in 1014 bytes, like the files delivered by MasterCard.
+ * <p>
+ * The benchmarks are packaged by the <code>benchmarks</code> profile and run with the gc profiler, which reports the
+ * bytes allocated per operation:
+ * <pre>
+ * mvn -P benchmarks package
+ * java -jar ipm-parser-benchmarks/target/benchmarks.jar -prof gc
+ * </pre>
+ *
+ * @author Ramses Vidor
+ */
+public enum IPMBenchmarkFiles {
+    SINGLETON;
+
+    /**
+     * Number of records of a small file, which fits in the CPU caches.
+     */
+    public static final String SMALL = "1000";
+
+    /**
+     * Number of records of a medium file, of some tens of megabytes.
+     */
+    public static final String MEDIUM = "100000";
+
+    /**
+     * Number of records of a large file, of some hundreds of megabytes.
+     */
+    public static final String LARGE = "1000000";
+
+    private static final long SEED = 8583;
+
+    /**
+     * Builds an RDW-framed EBCDIC file, blocked in 1014 bytes.
+     *
+     * @param records The number of records between the header and the trailer
+     * @return the contents of the file
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public static byte[] ebcdic(int records) throws ISOException, IOException {
+        return generate(ISOLayout.MASTERCARD_EBCDIC, records);
+    }
+
+    /**
+     * Builds a pre-edit file.
+     *
+     * @param records The number of records between the header and the trailer
+     * @return the contents of the file
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public static byte[] preEdit(int records) throws ISOException, IOException {
+        return generate(ISOLayout.MASTERCARD_ASCII, records);
+    }
+
+    private static byte[] generate(ISOLayout layout, int records) throws ISOException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(records * 300);
+        final IPMWriter writer = new IPMWriter(out, layout);
+
+        new IPMGenerator(SEED, 16, 3, 1).write(writer, records);
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.versates.ipm.benchmarks;
+
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.parser.IPMBuffer;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of EBCDIC and pre-edit files. Each operation parses the next message of the file, starting it over when it
+ * ends, so the throughput is in messages per second and the allocation reported by the gc profiler is per message.
+ *
+ * @author Ramses Vidor
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class IPMParseBenchmark {
+
+    /**
+     * A synthetic file and its parser.
+     */
+    public abstract static class ParsedFile {
+
+        @Param({IPMBenchmarkFiles.SMALL, IPMBenchmarkFiles.MEDIUM, IPMBenchmarkFiles.LARGE})
+        public int records;
+
+        private IPMFileParser parser;
+        private byte[] bytes;
+        private IPMBuffer buffer;
+
+        /**
+         * Builds the file.
+         *
+         * @throws ISOException If a message can not be packed
+         * @throws IOException If the file can not be written
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws ISOException, IOException {
+            parser = parser();
+            bytes = bytes(records);
+            buffer = IPMBuffer.wrap(bytes);
+        }
+
+        /**
+         * Parses the next message of the file.
+         *
+         * @return the message
+         * @throws IPMParserException If the file can not be parsed
+         */
+        public ISOMessage next() throws IPMParserException {
+            ISOMessage message = parser.next(buffer);
+
+            if (message == null) {
+                buffer = IPMBuffer.wrap(bytes);
+                message = parser.next(buffer);
+            }
+
+            return message;
+        }
+
+        abstract IPMFileParser parser();
+
+        abstract byte[] bytes(int records) throws ISOException, IOException;
+
+    }
+
+    /**
+     * An RDW-framed EBCDIC file, blocked in 1014 bytes.
+     */
+    @State(Scope.Thread)
+    public static class EbcdicFile extends ParsedFile {
+
+        @Override
+        IPMFileParser parser() {
+            return IPMFileParser.createMasterCardEbcdicFileParser();
+        }
+
+        @Override
+        byte[] bytes(int records) throws ISOException, IOException {
+            return IPMBenchmarkFiles.ebcdic(records);
+        }
+
+    }
+
+    /**
+     * A pre-edit file.
+     */
+    @State(Scope.Thread)
+    public static class PreEditFile extends ParsedFile {
+
+        @Override
+        IPMFileParser parser() {
+            return IPMFileParser.createMasterCardPreEditFileParser();
+        }
+
+        @Override
+        byte[] bytes(int records) throws ISOException, IOException {
+            return IPMBenchmarkFiles.preEdit(records);
+        }
+
+    }
+
+    @Benchmark
+    public ISOMessage ebcdic(EbcdicFile file) throws IPMParserException {
+        return file.next();
+    }
+
+    @Benchmark
+    public ISOMessage preEdit(PreEditFile file) throws IPMParserException {
+        return file.next();
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.versates.ipm.benchmarks;
+
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.packager.MasterCardEBCDICSubfieldPackager;
+import org.versates.ipm.iso.packager.MasterCardSubfieldPackager;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the PDS subfields of DE 48 by {@link MasterCardSubfieldPackager#unpack(org.jpos.iso.ISOComponent,
+ * byte[])}. Each operation unpacks the DE 48 of the next transaction of a synthetic file, encoded in EBCDIC.
+ *
+ * @author Ramses Vidor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class IPMSubfieldBenchmark {
+
+    @Param({IPMBenchmarkFiles.SMALL, IPMBenchmarkFiles.MEDIUM, IPMBenchmarkFiles.LARGE})
+    public int records;
+
+    private final MasterCardSubfieldPackager packager = new MasterCardEBCDICSubfieldPackager();
+    private byte[][] subfields;
+    private int next;
+
+    /**
+     * Packs the DE 48 of each transaction of the file.
+     *
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     * @throws IPMParserException If the file can not be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ISOException, IOException, IPMParserException {
+        final List<ISOMessage> messages = IPMFileParser.createMasterCardEbcdicFileParser()
+                .parse(IPMBenchmarkFiles.ebcdic(records));
+        subfields = new byte[records][];
+
+        for (int i = 0; i < records; i++) {
+            subfields[i] = packager.pack(messages.get(i + 1).getComponent(48));
+        }
+    }
+
+    @Benchmark
+    public ISOMsg unpack() throws ISOException {
+        final ISOMsg pds = new ISOMsg(48);
+        packager.unpack(pds, subfields[next]);
+        next = (next + 1 == records) ? 0 : next + 1;
+
+        return pds;
+    }
+
+}
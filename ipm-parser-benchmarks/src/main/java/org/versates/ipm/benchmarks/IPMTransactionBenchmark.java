@@ -0,0 +1,96 @@
+package org.versates.ipm.benchmarks;
+
+import org.versates.ipm.iso.FieldView;
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access to the DE and PDS fields of the transactions of a parsed file, through field instances and through a reused
+ * {@link FieldView}. Each operation reads two DE or two PDS of a new transaction over the next parsed message, so the
+ * PDS index of DE 48 is built once per operation, like in a single pass over a file.
+ *
+ * @author Ramses Vidor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class IPMTransactionBenchmark {
+
+    @Param({IPMBenchmarkFiles.SMALL, IPMBenchmarkFiles.MEDIUM, IPMBenchmarkFiles.LARGE})
+    public int records;
+
+    private final FieldView view = new FieldView();
+    private ISOMessage[] messages;
+    private int next;
+
+    /**
+     * Parses the file, keeping its transactions.
+     *
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     * @throws IPMParserException If the file can not be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ISOException, IOException, IPMParserException {
+        final List<ISOMessage> parsed = IPMFileParser.createMasterCardEbcdicFileParser()
+                .parse(IPMBenchmarkFiles.ebcdic(records));
+        messages = parsed.subList(1, parsed.size() - 1).toArray(new ISOMessage[records]);
+    }
+
+    @Benchmark
+    public void de(Blackhole blackhole) throws ISOException, IPMParserException {
+        final ISOTransaction transaction = next();
+        blackhole.consume(transaction.de(2).value());
+        blackhole.consume(transaction.de(4).value());
+    }
+
+    @Benchmark
+    public void pds(Blackhole blackhole) throws ISOException, IPMParserException {
+        final ISOTransaction transaction = next();
+        blackhole.consume(transaction.pds(148).value());
+        blackhole.consume(transaction.pds(158).value());
+    }
+
+    @Benchmark
+    public long deView() throws ISOException, IPMParserException {
+        final ISOTransaction transaction = next();
+        return transaction.de(4, view).asLong() + transaction.de(2, view).length();
+    }
+
+    @Benchmark
+    public long pdsView() throws ISOException, IPMParserException {
+        final ISOTransaction transaction = next();
+        return transaction.pds(148, view).asLong() + transaction.pds(158, view).length();
+    }
+
+    private ISOTransaction next() throws IPMParserException {
+        final ISOTransaction transaction = new ISOTransaction(messages[next]);
+        next = (next + 1 == records) ? 0 : next + 1;
+
+        return transaction;
+    }
+
+}
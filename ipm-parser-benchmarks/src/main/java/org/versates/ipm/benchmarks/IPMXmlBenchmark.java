@@ -0,0 +1,85 @@
+package org.versates.ipm.benchmarks;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a parsed file to XML by {@link IPMFile#xml()}. Each operation converts the whole file, so the
+ * throughput in messages per second is reported by the <code>messages</code> counter, and the allocation per message
+ * is the allocation per operation reported by the gc profiler divided by the number of records.
+ * <p>
+ * The XML of a file is built in a single string, so files of a million records are left out: their XML would not fit
+ * in a string.
+ *
+ * @author Ramses Vidor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IPMXmlBenchmark {
+
+    /**
+     * Counter of the messages converted.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Messages {
+
+        public long messages;
+
+        /**
+         * Starts the count of an iteration.
+         */
+        @Setup(Level.Iteration)
+        public void reset() {
+            messages = 0;
+        }
+
+    }
+
+    @Param({IPMBenchmarkFiles.SMALL, IPMBenchmarkFiles.MEDIUM})
+    public int records;
+
+    private IPMFile file;
+
+    /**
+     * Parses the file.
+     *
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     * @throws IPMParserException If the file can not be parsed
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ISOException, IOException, IPMParserException {
+        file = new IPMFile("benchmark.ipm", IPMBenchmarkFiles.ebcdic(records),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+    }
+
+    @Benchmark
+    public String xml(Messages counter) {
+        counter.messages += records + 2;
+        return file.xml();
+    }
+
+}
@@ -2,11 +2,18 @@ package org.versates.ipm.conversor;
 
 import org.versates.ipm.conversor.action.Action;
 import org.versates.ipm.conversor.action.ConversorAction;
+import org.versates.ipm.conversor.action.DirectoryAction;
 import org.versates.ipm.conversor.action.EncodingAction;
+import org.versates.ipm.conversor.action.FieldsAction;
+import org.versates.ipm.conversor.action.GzipAction;
 import org.versates.ipm.conversor.action.HelpAction;
+import org.versates.ipm.conversor.action.OutputAction;
+import org.versates.ipm.conversor.action.WorkersAction;
+import org.versates.ipm.helper.IPMProjection;
 import org.versates.ipm.iso.packager.ISOLayout;
 import org.apache.commons.cli.*;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.util.HashMap;
 import java.util.Map;
@@ -24,16 +31,46 @@ public enum Run {
     private static final CommandLineParser PARSER = new PosixParser();
     private static final Map<String, Action> ACTIONS = new HashMap<String, Action>();
     private static final EncodingAction ENCODING_ACTION = new EncodingAction();
+    private static final OutputAction OUTPUT_ACTION = new OutputAction();
+    private static final GzipAction GZIP_ACTION = new GzipAction();
+    private static final FieldsAction FIELDS_ACTION = new FieldsAction();
+    private static final FieldsAction GROUP_BY_ACTION = new FieldsAction();
+    private static final FieldsAction SUM_ACTION = new FieldsAction();
+    private static final DirectoryAction DIRECTORY_ACTION = new DirectoryAction();
+    private static final WorkersAction WORKERS_ACTION = new WorkersAction();
     private static final String ASK_HELP = "Use -h for help.";
     private static final String VALIDATION_MESSAGE_FILE ="Inform the file path"  + ASK_HELP;
     private static final String HELP_ACTION_MESSAGE = "Help!";
-    private static final String CONVERSOR_ACTION_MESSAGE = "File path to be converted.";
+    private static final String CONVERSOR_ACTION_MESSAGE = "File path to be converted. With -d, also a directory or "
+            + "a glob, like /data/*.ipm.";
     private static final String ENCODING_ACTION_MESSAGE = "Codification/IPM file format. Valid options: ASCII or EBCDIC.";
+    private static final String OUTPUT_ACTION_MESSAGE = "Output format or file. Valid options: xml (default), csv, "
+            + "tsv or a file path, whose extension gives the format, like out.csv, or out.csv.gz to also compress "
+            + "it.";
+    private static final String GZIP_ACTION_MESSAGE = "Compress the output with gzip.";
+    private static final String VALIDATION_MESSAGE_OUTPUT = "Inform the output directory with -d, not an output "
+            + "file, to convert many files. " + ASK_HELP;
+    private static final String FIELDS_ACTION_MESSAGE = "Fields of csv or tsv output, like DE2,DE4,PDS0148.";
+    private static final String GROUP_BY_ACTION_MESSAGE = "Fields to group the transactions by in a summary, like "
+            + "DE24,DE49.";
+    private static final String SUM_ACTION_MESSAGE = "Fields to be summed in a summary, like DE4,DE5.";
+    private static final String DIRECTORY_ACTION_MESSAGE = "Output directory of a batch conversion. Each file is "
+            + "converted into its own file.";
+    private static final String WORKERS_ACTION_MESSAGE = "Number of files converted at the same time in a batch "
+            + "conversion. Default: number of processors.";
+    private static final String VALIDATION_MESSAGE_FIELDS = "Inform the fields with --fields. " + ASK_HELP;
     private static final Options OPTIONS = new Options();
 
     static {
-        registerCommandOption(new Option("e", ENCODING_ACTION_MESSAGE), ENCODING_ACTION);
-        registerCommandOption(new Option("f", CONVERSOR_ACTION_MESSAGE), new ConversorAction());
+        registerCommandOption(new Option("e", true, ENCODING_ACTION_MESSAGE), ENCODING_ACTION);
+        registerCommandOption(new Option("f", true, CONVERSOR_ACTION_MESSAGE), new ConversorAction());
+        registerCommandOption(new Option("o", "output", true, OUTPUT_ACTION_MESSAGE), OUTPUT_ACTION);
+        registerCommandOption(new Option("z", "gzip", false, GZIP_ACTION_MESSAGE), GZIP_ACTION);
+        registerCommandOption(new Option("p", "fields", true, FIELDS_ACTION_MESSAGE), FIELDS_ACTION);
+        registerCommandOption(new Option("g", "group-by", true, GROUP_BY_ACTION_MESSAGE), GROUP_BY_ACTION);
+        registerCommandOption(new Option("s", "sum", true, SUM_ACTION_MESSAGE), SUM_ACTION);
+        registerCommandOption(new Option("d", "output-dir", true, DIRECTORY_ACTION_MESSAGE), DIRECTORY_ACTION);
+        registerCommandOption(new Option("w", "workers", true, WORKERS_ACTION_MESSAGE), WORKERS_ACTION);
         registerCommandOption(new Option("h", HELP_ACTION_MESSAGE), new HelpAction(OPTIONS));
     }
 
@@ -43,14 +80,14 @@ public enum Run {
      * @param arguments Arguments passed for the program.
      */
     public static void main(String[] arguments) {
-        final PrintWriter writer = new PrintWriter(System.out);
+        final PrintWriter writer = new PrintWriter(System.err);
 
         try {
             final CommandLine commandLine = PARSER.parse(OPTIONS, arguments);
             validateCommandLine(commandLine);
             execute(commandLine);
         } catch (final Exception e) {
-            writer.print(e.getMessage());
+            writer.println(e.getMessage());
         }
 
         writer.flush();
@@ -66,11 +103,99 @@ public enum Run {
         return ENCODING_ACTION.layout();
     }
 
+    /**
+     * Return the output format configurated to convertion of IPM file.
+     *
+     * @return output format to be utilized for convertion.
+     */
+    public static OutputAction.Format getFormat() {
+        return OUTPUT_ACTION.format();
+    }
+
+    /**
+     * Return the file configurated to receive the output of the convertion.
+     *
+     * @return output file, or null if the output is written in the console.
+     */
+    public static File getOutput() {
+        return OUTPUT_ACTION.file();
+    }
+
+    /**
+     * Return whether the output of the convertion is compressed with gzip, either asked with -z or by an output file
+     * ending with .gz.
+     *
+     * @return TRUE if the output is compressed, FALSE otherwise.
+     */
+    public static boolean isGzip() {
+        return GZIP_ACTION.gzip() || OUTPUT_ACTION.gzip();
+    }
+
+    /**
+     * Return the fields configurated to be exported in delimited output.
+     *
+     * @return fields to be exported, or null if they were not informed.
+     */
+    public static IPMProjection getFields() {
+        return FIELDS_ACTION.fields();
+    }
+
+    /**
+     * Return the fields configurated to group the transactions by in a summary.
+     *
+     * @return fields to group the transactions by, or null if they were not informed.
+     */
+    public static IPMProjection getGroupBy() {
+        return GROUP_BY_ACTION.fields();
+    }
+
+    /**
+     * Return the fields configurated to be summed in a summary.
+     *
+     * @return fields to be summed, or null if they were not informed.
+     */
+    public static IPMProjection getSums() {
+        return SUM_ACTION.fields();
+    }
+
+    /**
+     * Check whether a summary of the transactions was asked instead of their conversion.
+     *
+     * @return TRUE if the transactions are aggregated, FALSE otherwise.
+     */
+    public static boolean isSummary() {
+        return getGroupBy() != null || getSums() != null;
+    }
+
+    /**
+     * Return the output directory configurated to a batch conversion.
+     *
+     * @return output directory, or null if the conversion is not a batch.
+     */
+    public static File getDirectory() {
+        return DIRECTORY_ACTION.directory();
+    }
+
+    /**
+     * Return the number of files converted at the same time in a batch conversion.
+     *
+     * @return number of workers of the batch.
+     */
+    public static int getWorkers() {
+        return WORKERS_ACTION.workers();
+    }
+
     private static void execute(CommandLine commandLine) {
-        if (commandLine.hasOption("e")) {
-            ACTIONS.get("e").execute(commandLine.getOptionValue("e"));
+        for (String option : new String[] {"e", "o", "z", "p", "g", "s", "d", "w"}) {
+            if (commandLine.hasOption(option)) {
+                ACTIONS.get(option).execute(commandLine.getOptionValue(option));
+            }
         }
 
+        isTrue(getFormat() == OutputAction.Format.XML || getFields() != null || isSummary(),
+                VALIDATION_MESSAGE_FIELDS);
+        isTrue(getDirectory() == null || getOutput() == null, VALIDATION_MESSAGE_OUTPUT);
+
         ACTIONS.get("f").execute(commandLine.getOptionValue("f"));
     }
 
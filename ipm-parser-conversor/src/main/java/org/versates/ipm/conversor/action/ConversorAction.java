@@ -1,15 +1,32 @@
 package org.versates.ipm.conversor.action;
 
 import org.versates.ipm.conversor.Run;
+import org.versates.ipm.helper.DelimitedConversor;
+import org.versates.ipm.helper.IPMBatch;
+import org.versates.ipm.helper.IPMDelimitedWriter;
 import org.versates.ipm.helper.XMLConversor;
+import org.versates.ipm.parser.IPMParserException;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 
 /**
- * Conversion command class from file IPM to XML.
+ * Conversion command class from file IPM to XML, or to CSV or TSV with the fields informed, or to a summary of the
+ * transactions grouped by the fields informed, as TSV unless CSV is asked. The output is written through a large
+ * buffer, optionally compressed with gzip, into the console or into the output file. When an output directory is
+ * informed, the argument may be a directory or a glob, and its files are converted concurrently, each one into its own
+ * file, ending with a report of the status and throughput of each file.
  *
  * @author Ramses Vidor
  */
 public class ConversorAction extends Action {
 
+    private static final int LINE_BREAK = '\n';
+
     /**
      * Build an instance of this object.
      */
@@ -18,7 +35,66 @@ public class ConversorAction extends Action {
 
     @Override
     public void execute(String argument) {
-        XMLConversor.dump(argument, Run.getLayout());
+        try {
+            if (Run.getDirectory() != null) {
+                batch(argument);
+            } else {
+                convert(argument);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Error on processing IPM file " + argument + ": " + e.getMessage(), e);
+        } catch (IPMParserException e) {
+            throw new IllegalStateException("Error on processing IPM file " + argument + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted processing IPM files " + argument, e);
+        }
+    }
+
+    private void convert(String argument) throws IOException, IPMParserException {
+        final OutputStream out = (Run.getOutput() != null) ? IPMBatch.open(Run.getOutput(), Run.isGzip())
+                : IPMBatch.open(new FileOutputStream(FileDescriptor.out), Run.isGzip());
+
+        try {
+            if (Run.isSummary()) {
+                DelimitedConversor.aggregate(argument, Run.getLayout(), Run.getGroupBy(), Run.getSums(),
+                        delimiter(), out);
+            } else if (Run.getFormat() == OutputAction.Format.XML) {
+                XMLConversor.write(argument, Run.getLayout(), out);
+                out.write(LINE_BREAK);
+            } else {
+                DelimitedConversor.write(argument, Run.getLayout(), Run.getFields(), delimiter(), out);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void batch(String argument) throws IOException, InterruptedException {
+        final List<File> files = IPMBatch.files(argument);
+        final long start = System.nanoTime();
+        final List<IPMBatch.Result> results = new IPMBatch(conversion(), Run.getDirectory(), Run.getWorkers(),
+                Run.isGzip()).run(files);
+
+        IPMBatch.report(results, System.nanoTime() - start, System.out);
+    }
+
+    private IPMBatch.Conversion conversion() {
+        if (Run.isSummary()) {
+            return IPMBatch.summary(Run.getLayout(), Run.getGroupBy(), Run.getSums(), delimiter());
+        }
+
+        switch (Run.getFormat()) {
+            case CSV:
+            case TSV:
+                return IPMBatch.delimited(Run.getLayout(), Run.getFields(), delimiter());
+            default:
+                return IPMBatch.xml(Run.getLayout());
+        }
+    }
+
+    private char delimiter() {
+        return Run.getFormat() == OutputAction.Format.CSV ? IPMDelimitedWriter.CSV : IPMDelimitedWriter.TSV;
     }
 
 }
@@ -0,0 +1,32 @@
+package org.versates.ipm.conversor.action;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+
+/**
+ * Command class of definition of the output directory of a batch conversion.
+ *
+ * @author Ramses Vidor
+ */
+public class DirectoryAction extends Action {
+
+    private File directory;
+
+    @Override
+    public void execute(String argument) {
+        if (StringUtils.isNotEmpty(argument)) {
+            directory = new File(argument);
+        }
+    }
+
+    /**
+     * Return the directory configurated to receive the converted files.
+     *
+     * @return output directory, or null if it was not informed.
+     */
+    public File directory() {
+        return directory;
+    }
+
+}
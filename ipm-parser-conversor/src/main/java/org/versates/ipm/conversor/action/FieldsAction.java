@@ -0,0 +1,33 @@
+package org.versates.ipm.conversor.action;
+
+import org.versates.ipm.helper.IPMProjection;
+
+/**
+ * Command class of definition of the fields to be exported.
+ *
+ * @author Ramses Vidor
+ */
+public class FieldsAction extends Action {
+
+    private IPMProjection fields;
+
+    @Override
+    public void execute(String argument) {
+        try {
+            fields = IPMProjection.parse(argument);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid fields: " + argument
+                    + ". Inform DEs and PDS separated by commas, like DE2,DE4,PDS0148.");
+        }
+    }
+
+    /**
+     * Return the fields configurated to be exported.
+     *
+     * @return fields to be exported, or null if they were not informed.
+     */
+    public IPMProjection fields() {
+        return fields;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.versates.ipm.conversor.action;
+
+/**
+ * Command class of compression of the output with gzip.
+ *
+ * @author Ramses Vidor
+ */
+public class GzipAction extends Action {
+
+    private boolean gzip;
+
+    @Override
+    public void execute(String argument) {
+        gzip = true;
+    }
+
+    /**
+     * Return whether the output of the convertion is compressed with gzip.
+     *
+     * @return TRUE if the output is compressed, FALSE otherwise.
+     */
+    public boolean gzip() {
+        return gzip;
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.versates.ipm.conversor.action;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+
+/**
+ * Command class of output definition: either the output format or the file where the output is written, whose format
+ * is given by its extension. A file ending with <code>.gz</code>, like <code>out.tsv.gz</code>, is also compressed with
+ * gzip.
+ *
+ * @author Ramses Vidor
+ */
+public class OutputAction extends Action {
+
+    /**
+     * Output formats of the conversion.
+     */
+    public enum Format {
+        XML, CSV, TSV
+    }
+
+    private static final String GZIP = ".gz";
+
+    private Format format;
+    private File file;
+    private boolean gzip;
+
+    @Override
+    public void execute(String argument) {
+        if (StringUtils.isEmpty(argument)) {
+            return;
+        }
+
+        if (isPath(argument)) {
+            file = new File(argument);
+            final String name = file.getName().toLowerCase();
+            gzip = name.endsWith(GZIP);
+            format = formatOf(StringUtils.removeEnd(name, GZIP));
+            return;
+        }
+
+        try {
+            format = Format.valueOf(argument.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid output: " + argument
+                    + ". Valid options: xml, csv, tsv or a file path, like out.csv.");
+        }
+    }
+
+    /**
+     * Return the output format configurated to convertion of IPM file.
+     *
+     * @return output format to be utilized for convertion.
+     */
+    public Format format() {
+        return format == null ? Format.XML : format;
+    }
+
+    /**
+     * Return the file configurated to receive the output of the convertion.
+     *
+     * @return output file, or null if the output is written in the console.
+     */
+    public File file() {
+        return file;
+    }
+
+    /**
+     * Return whether the output file is named as a gzip file.
+     *
+     * @return TRUE if the output file ends with .gz, FALSE otherwise.
+     */
+    public boolean gzip() {
+        return gzip;
+    }
+
+    private static boolean isPath(String argument) {
+        return argument.indexOf('.') >= 0 || argument.indexOf('/') >= 0 || argument.indexOf(File.separatorChar) >= 0;
+    }
+
+    private static Format formatOf(String name) {
+        for (Format candidate : Format.values()) {
+            if (name.endsWith("." + candidate.name().toLowerCase())) {
+                return candidate;
+            }
+        }
+
+        return Format.XML;
+    }
+
+}
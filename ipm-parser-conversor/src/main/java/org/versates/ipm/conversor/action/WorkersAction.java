@@ -0,0 +1,34 @@
+package org.versates.ipm.conversor.action;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Command class of definition of the number of files converted at the same time in a batch conversion.
+ *
+ * @author Ramses Vidor
+ */
+public class WorkersAction extends Action {
+
+    private int workers;
+
+    @Override
+    public void execute(String argument) {
+        if (StringUtils.isEmpty(argument) || !StringUtils.isNumeric(argument) || argument.length() > 4
+                || Integer.parseInt(argument) == 0) {
+            throw new IllegalArgumentException("Invalid number of workers: " + argument
+                    + ". Inform a positive number.");
+        }
+
+        workers = Integer.parseInt(argument);
+    }
+
+    /**
+     * Return the number of files configurated to be converted at the same time.
+     *
+     * @return number of workers, by default the number of available processors.
+     */
+    public int workers() {
+        return workers == 0 ? Runtime.getRuntime().availableProcessors() : workers;
+    }
+
+}
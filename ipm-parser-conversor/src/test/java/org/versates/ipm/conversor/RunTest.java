@@ -0,0 +1,56 @@
+package org.versates.ipm.conversor;
+
+import org.versates.ipm.IPMWriter;
+import org.versates.ipm.helper.IPMGenerator;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class RunTest {
+
+    private static final int TRANSACTIONS = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGzipOutputFile() throws Exception {
+        final File input = folder.newFile("file.ipm");
+        final File output = new File(folder.getRoot(), "out.csv.gz");
+        final IPMWriter writer = new IPMWriter(new FileOutputStream(input), ISOLayout.MASTERCARD_EBCDIC);
+
+        new IPMGenerator(8583).write(writer, TRANSACTIONS);
+        writer.close();
+
+        Run.main(new String[] {"-f", input.getPath(), "-o", output.getPath(), "-p", "DE2,DE4"});
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new FileInputStream(output)), "UTF-8"));
+        int rows = 0;
+
+        try {
+            assertThat(reader.readLine(), is(equalTo("DE2,DE4")));
+
+            while (reader.readLine() != null) {
+                rows++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        assertThat(rows, is(equalTo(TRANSACTIONS)));
+    }
+
+}
@@ -1,19 +1,20 @@
 package org.versates.ipm;
 
-import org.versates.ipm.helper.XMLConversor;
-import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.helper.IPMXmlWriter;
 import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMBuffer;
 import org.versates.ipm.parser.IPMFileParser;
 import org.versates.ipm.parser.IPMParserException;
 import org.apache.commons.lang.StringUtils;
-import org.jpos.iso.ISOException;
 
+import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-
-import static java.text.MessageFormat.format;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * File representation class of Integrated Products Messages (IPM). Compensation by means of the
@@ -26,11 +27,6 @@ import static java.text.MessageFormat.format;
 public class IPMFile implements Serializable {
 
     private static final long serialVersionUID = -3141984967806646322L;
-    private static final int FUNCTION_CODE_DE = 24;
-    private static final int CICLE_ID_DE = 63;
-    private static final String HEADER_MTI = "1644";
-    private static final String FUNCTION_CODE_HEADER = "697";
-    private static final String FUNCTION_CODE_FOOTER = "695";
 
     private ISOTransaction header;
     private ISOTransaction footer;
@@ -47,12 +43,64 @@ public class IPMFile implements Serializable {
      * @throws IPMParserException Exception thrown if the IPM file does not match the processing criteria.
      */
     public IPMFile(String name, byte[] bytes, IPMFileParser parser) throws IPMParserException {
+        this(name, IPMBuffer.wrap(bytes), parser);
+    }
+
+    /**
+     * Constructs an IPM file instance from the contents of a byte buffer, like a <code>MappedByteBuffer</code>.
+     *
+     * @param name The name of the IPM file
+     * @param bytes IPM file contents, from the position to the limit of the buffer
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     * @throws IPMParserException Exception thrown if the IPM file does not match the processing criteria.
+     */
+    public IPMFile(String name, ByteBuffer bytes, IPMFileParser parser) throws IPMParserException {
+        this(name, IPMBuffer.wrap(bytes), parser);
+    }
+
+    /**
+     * Constructs an IPM file instance from the contents available through the buffer.
+     *
+     * @param name The name of the IPM file
+     * @param buffer The window over the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     * @throws IPMParserException Exception thrown if the IPM file does not match the processing criteria.
+     */
+    public IPMFile(String name, IPMBuffer buffer, IPMFileParser parser) throws IPMParserException {
+        this(name, new IPMReader(buffer, parser));
+    }
+
+    /**
+     * Constructs an IPM file instance from the contents available through the buffer, unpacking its records in
+     * parallel on the pool. Transactions keep the order of the file.
+     *
+     * @param name The name of the IPM file
+     * @param buffer The window over the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     * @param pool The pool where the records are unpacked
+     * @throws IPMParserException Exception thrown if the IPM file does not match the processing criteria.
+     */
+    public IPMFile(String name, IPMBuffer buffer, IPMFileParser parser, ForkJoinPool pool) throws IPMParserException {
+        this(name, new IPMReader(buffer, parser, pool));
+    }
+
+    /**
+     * Constructs an IPM file instance with all the transactions of the reader, which is not closed.
+     *
+     * @param name The name of the IPM file
+     * @param reader The reader of the IPM file contents
+     * @throws IPMParserException Exception thrown if the IPM file does not match the processing criteria.
+     */
+    public IPMFile(String name, IPMReader reader) throws IPMParserException {
         if (StringUtils.isEmpty(name)) {
             throw new IPMParserException("ipmparser.file.invalidfilename");
         }
 
         this.name = name;
-        extractTransactions(bytes, parser);
+        extractTransactions(reader);
     }
 
     /**
@@ -111,7 +159,13 @@ public class IPMFile implements Serializable {
      * @param printStream Stream to output the output where the result should be printed
      */
     public void dump(PrintStream printStream) {
-        printStream.println(xml());
+        try {
+            new IPMXmlWriter(printStream).write(this);
+        } catch (IOException e) {
+            printStream.print(e.getMessage());
+        }
+
+        printStream.println();
     }
 
     /**
@@ -120,62 +174,29 @@ public class IPMFile implements Serializable {
      * @return conversion of IPM file contents to XML
      */
     public String xml() {
-        StringBuilder output = new StringBuilder(openXmlTag() + infoAsXml(header, "header"));
-
-        for (ISOTransaction transaction : transactions) {
-            output.append("\n").append(transaction.xml("\t"));
-        }
-
-        return output.append("\n").append(infoAsXml(footer, "footer")).append(closeXmlTag()).toString();
-    }
+        final StringWriter output = new StringWriter();
 
-    private void extractTransactions(byte[] bytes, IPMFileParser parser) throws IPMParserException {
-        for (ISOMessage message : parser.parse(bytes)) {
-            ISOTransaction tx = new ISOTransaction(message);
-            if (isHeader(tx)) {
-                header = tx;
-            } else if (isFooter(tx)) {
-                footer = tx;
-            } else if (isValidTransaction(tx) || tx.isCorrupted()) {
-                transactions.add(tx);
-            }
-        }
-
-        if (header == null) {
-            throw new IPMParserException("ipmparser.file.noheader");
+        try {
+            new IPMXmlWriter(output).write(this);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
-    }
-
-    private boolean isValidTransaction(ISOTransaction tx) {
-        return tx.hasDe(CICLE_ID_DE);
-    }
 
-    private boolean isHeader(ISOTransaction tx) throws IPMParserException {
-        return isHeaderMessage(tx, FUNCTION_CODE_HEADER);
+        return output.toString();
     }
 
-    private boolean isFooter(ISOTransaction tx) throws IPMParserException {
-        return isHeaderMessage(tx, FUNCTION_CODE_FOOTER);
-    }
+    private void extractTransactions(IPMReader reader) throws IPMParserException {
+        header = reader.header();
 
-    private boolean isHeaderMessage(ISOTransaction tx, String functionCode) throws IPMParserException {
         try {
-            return HEADER_MTI.equals(tx.mti()) && functionCode.equals(tx.de(FUNCTION_CODE_DE).value());
-        } catch (ISOException e) {
-            throw new IPMParserException(e);
+            while (reader.hasNext()) {
+                transactions.add(reader.next());
+            }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
         }
-    }
-
-    private String infoAsXml(ISOTransaction info, String type) {
-        return info.xml("\t").replaceAll("<(/)?message>", "<$1" + type + ">");
-    }
-
-    private String openXmlTag() {
-        return format(XMLConversor.HEADER_TAG, name(), countTransactions());
-    }
 
-    private String closeXmlTag() {
-        return XMLConversor.FOOTER_TAG;
+        footer = reader.footer();
     }
 
 }
@@ -0,0 +1,316 @@
+package org.versates.ipm;
+
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMBuffer;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMInflaterChannel;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Streaming reader of Integrated Products Messages (IPM) files. Unlike {@link IPMFile}, the reader does not keep the
+ * file contents nor its transactions in memory: the file header is read first, then the ISO 8583 transactions are
+ * extracted one at a time as they are requested, and the file footer is available once the end of the file is
+ * reached. The memory used is therefore the same whatever the size of the file.
+ * <p>
+ * When a fork-join pool is given, the records of the file are delimited without being unpacked and then unpacked in
+ * chunks on the pool, while the reader keeps delimiting the next chunks. Transactions are still returned in the order
+ * of the file. Layouts whose records can not be delimited without unpacking them are read sequentially.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMReader implements Iterator<ISOTransaction>, Closeable {
+
+    private static final int FUNCTION_CODE_DE = 24;
+    private static final int CICLE_ID_DE = 63;
+    private static final String HEADER_MTI = "1644";
+    private static final String FUNCTION_CODE_HEADER = "697";
+    private static final String FUNCTION_CODE_FOOTER = "695";
+    private static final int CHUNK_RECORDS = 4096;
+    private static final int CHUNK_LENGTH = 1024 * 1024;
+    private static final int PENDING_CHUNKS = 4;
+
+    private final IPMFileParser parser;
+    private final IPMBuffer buffer;
+    private final Closeable source;
+    private final ForkJoinPool pool;
+    private final LinkedList<ISOTransaction> pending = new LinkedList<ISOTransaction>();
+    private final LinkedList<IPMRecordTask> chunks = new LinkedList<IPMRecordTask>();
+
+    private ISOTransaction header;
+    private ISOTransaction footer;
+    private boolean finished;
+    private boolean delimited = true;
+
+    /**
+     * Constructs a reader of the IPM file contents provided by the stream. Gzip and zip archives are detected and
+     * decompressed while the file is read.
+     *
+     * @param in The stream with the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     */
+    public IPMReader(InputStream in, IPMFileParser parser) {
+        this(IPMInflaterChannel.of(in), parser);
+    }
+
+    /**
+     * Constructs a reader of the IPM file contents provided by the channel.
+     *
+     * @param channel The channel with the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     */
+    public IPMReader(ReadableByteChannel channel, IPMFileParser parser) {
+        this(IPMBuffer.of(channel), channel, parser);
+    }
+
+    /**
+     * Constructs a reader of the IPM file contents available through the buffer.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     */
+    public IPMReader(IPMBuffer buffer, IPMFileParser parser) {
+        this(buffer, null, parser);
+    }
+
+    /**
+     * Constructs a reader of the IPM file contents available through the buffer, closing the source of the contents
+     * when the reader is closed.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @param source The source of the contents, like the file mapped by the buffer
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     */
+    public IPMReader(IPMBuffer buffer, Closeable source, IPMFileParser parser) {
+        this(buffer, source, parser, null);
+    }
+
+    /**
+     * Constructs a reader of the IPM file contents available through the buffer, unpacking its records in parallel
+     * on the pool.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     * @param pool The pool where the records are unpacked
+     */
+    public IPMReader(IPMBuffer buffer, IPMFileParser parser, ForkJoinPool pool) {
+        this(buffer, null, parser, pool);
+    }
+
+    /**
+     * Constructs a reader of the IPM file contents available through the buffer, unpacking its records in parallel
+     * on the pool and closing the source of the contents when the reader is closed.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @param source The source of the contents, like the file mapped by the buffer
+     * @param parser The parser to be used to interpret the IPM file. It must be compatible with coding and
+     * IPM file layout to be processed
+     * @param pool The pool where the records are unpacked, or null to unpack them sequentially
+     */
+    public IPMReader(IPMBuffer buffer, Closeable source, IPMFileParser parser, ForkJoinPool pool) {
+        this.buffer = buffer;
+        this.source = source;
+        this.parser = parser;
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the file header message, reading the file up to it if needed. The file header is identified by MTI
+     * 1644, function code (DE 24) 697.
+     *
+     * @return IPM file header
+     * @throws IPMParserException If the file has no header or it can not be read
+     */
+    public ISOTransaction header() throws IPMParserException {
+        while (header == null && !finished) {
+            read();
+        }
+
+        if (header == null) {
+            throw new IPMParserException("ipmparser.file.noheader");
+        }
+
+        return header;
+    }
+
+    /**
+     * Returns the file footer message. The file footer is identified by MTI 1644, function code (DE 24) 695 and is
+     * only available after all the transactions of the file were read.
+     *
+     * @return IPM file footer, or null if it was not read yet
+     */
+    public ISOTransaction footer() {
+        return footer;
+    }
+
+    /**
+     * Checks whether there are more ISO 8583 transactions in the file, reading the file up to the next one.
+     *
+     * @return TRUE if there is another transaction, FALSE otherwise
+     * @throws IPMReaderException If the file has no header or it can not be read
+     */
+    @Override
+    public boolean hasNext() {
+        try {
+            header();
+
+            while (pending.isEmpty() && !finished) {
+                read();
+            }
+        } catch (IPMParserException e) {
+            throw new IPMReaderException(e);
+        }
+
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Returns the next ISO 8583 transaction of the file, with the exception of header and footer messages.
+     *
+     * @return the next transaction
+     * @throws IPMReaderException If the file has no header or it can not be read
+     */
+    @Override
+    public ISOTransaction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        return pending.removeFirst();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("ipmparser.reader.readonly");
+    }
+
+    /**
+     * Closes the source of the IPM file contents.
+     *
+     * @throws IOException If the source can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    private void read() throws IPMParserException {
+        if (pool != null && (delimited || !chunks.isEmpty())) {
+            readChunk();
+        } else {
+            readMessage();
+        }
+    }
+
+    private void readMessage() throws IPMParserException {
+        final ISOMessage message = parser.next(buffer);
+
+        if (message == null) {
+            finished = true;
+            return;
+        }
+
+        accept(new ISOTransaction(message));
+    }
+
+    private void readChunk() throws IPMParserException {
+        while (delimited && chunks.size() < PENDING_CHUNKS) {
+            final IPMRecordTask chunk = delimitChunk();
+
+            if (chunk != null) {
+                pool.execute(chunk);
+                chunks.add(chunk);
+            }
+        }
+
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        try {
+            for (ISOTransaction tx : chunks.removeFirst().join()) {
+                if (tx != null) {
+                    accept(tx);
+                }
+            }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        }
+    }
+
+    private IPMRecordTask delimitChunk() throws IPMParserException {
+        final int[] offsets = new int[CHUNK_RECORDS + 1];
+        byte[] bytes = new byte[CHUNK_LENGTH];
+        int records = 0;
+
+        while (records < CHUNK_RECORDS) {
+            final int length = parser.delimit(buffer);
+
+            if (length <= 0) {
+                delimited = false;
+                break;
+            }
+
+            final int start = offsets[records];
+
+            if (start + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, start + length));
+            }
+
+            System.arraycopy(buffer.array(), buffer.position(), bytes, start, length);
+            buffer.consume(length);
+            offsets[++records] = start + length;
+        }
+
+        return (records == 0) ? null : new IPMRecordTask(parser, bytes, offsets, records);
+    }
+
+    private void accept(ISOTransaction tx) throws IPMParserException {
+        if (isHeader(tx)) {
+            header = (header == null) ? tx : header;
+        } else if (isFooter(tx)) {
+            footer = tx;
+        } else if (isValidTransaction(tx) || tx.isCorrupted()) {
+            pending.add(tx);
+        }
+    }
+
+    private boolean isValidTransaction(ISOTransaction tx) {
+        return tx.hasDe(CICLE_ID_DE);
+    }
+
+    private boolean isHeader(ISOTransaction tx) throws IPMParserException {
+        return isHeaderMessage(tx, FUNCTION_CODE_HEADER);
+    }
+
+    private boolean isFooter(ISOTransaction tx) throws IPMParserException {
+        return isHeaderMessage(tx, FUNCTION_CODE_FOOTER);
+    }
+
+    private boolean isHeaderMessage(ISOTransaction tx, String functionCode) throws IPMParserException {
+        try {
+            return HEADER_MTI.equals(tx.mti()) && functionCode.equals(tx.de(FUNCTION_CODE_DE).value());
+        } catch (ISOException e) {
+            throw new IPMParserException(e);
+        }
+    }
+
+}
@@ -0,0 +1,23 @@
+package org.versates.ipm;
+
+import org.versates.ipm.parser.IPMParserException;
+
+/**
+ * Unchecked exception class for failures found while iterating over the transactions of an IPM file.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMReaderException extends RuntimeException {
+
+    private static final long serialVersionUID = 4617362503374851907L;
+
+    /**
+     * Constructs an instance of this exception, defining its root cause.
+     *
+     * @param cause The root cause of this exception
+     */
+    public IPMReaderException(IPMParserException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.versates.ipm;
+
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Fork-join task that unpacks a chunk of records delimited by the parser into ISO 8583 transactions. The chunk is
+ * split in halves until each task has a few records left, and every transaction is stored at the index of its record,
+ * so the transactions of the chunk keep the order of the file. Records filtered out by the parser are left null.
+ *
+ * @author Ramses Vidor
+ */
+final class IPMRecordTask extends RecursiveTask<ISOTransaction[]> {
+
+    private static final long serialVersionUID = 2871564094310975012L;
+    private static final int THRESHOLD = 64;
+
+    private final IPMFileParser parser;
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int from;
+    private final int to;
+    private final ISOTransaction[] transactions;
+
+    /**
+     * Constructs a task over a chunk of records.
+     *
+     * @param parser The parser which delimited the records
+     * @param bytes The contents of the records of the chunk
+     * @param offsets The offset of each record into the contents, followed by the end of the last record
+     * @param records The number of records of the chunk
+     */
+    IPMRecordTask(IPMFileParser parser, byte[] bytes, int[] offsets, int records) {
+        this(parser, bytes, offsets, 0, records, new ISOTransaction[records]);
+    }
+
+    private IPMRecordTask(IPMFileParser parser, byte[] bytes, int[] offsets, int from, int to,
+            ISOTransaction[] transactions) {
+        this.parser = parser;
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.from = from;
+        this.to = to;
+        this.transactions = transactions;
+    }
+
+    @Override
+    protected ISOTransaction[] compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                transactions[i] = unpack(i);
+            }
+        } else {
+            final int middle = (from + to) >>> 1;
+            invokeAll(new IPMRecordTask(parser, bytes, offsets, from, middle, transactions),
+                    new IPMRecordTask(parser, bytes, offsets, middle, to, transactions));
+        }
+
+        return transactions;
+    }
+
+    private ISOTransaction unpack(int record) {
+        try {
+            final ISOMessage message = parser.unpack(bytes, offsets[record], offsets[record + 1] - offsets[record]);
+            return (message == null) ? null : new ISOTransaction(message);
+        } catch (IPMParserException e) {
+            throw new IPMReaderException(e);
+        }
+    }
+
+}
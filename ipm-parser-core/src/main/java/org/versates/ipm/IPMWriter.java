@@ -0,0 +1,302 @@
+package org.versates.ipm;
+
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.iso.packager.ISOPackagerRegistry;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Streaming writer of Integrated Products Messages (IPM) files, the counterpart of {@link IPMReader}. Messages are
+ * packed one at a time and framed in the format of the layout:
+ * <ul>
+ * <li>EBCDIC files have each message preceded by its 4-byte Record Descriptor Word (RDW) and end with an empty RDW.
+ * By default, the records are also blocked like the files delivered by MasterCard: every 1012 bytes are followed by
+ * 2 bytes of padding, and the last block is padded up to its 1014 bytes.</li>
+ * <li>Pre-edit files start with a 132-byte header, written as spaces, followed by the messages with no framing.</li>
+ * </ul>
+ * The framed bytes are assembled in a large buffer written to the stream when it is full, so files are written at the
+ * speed of the stream. The writer does not check the messages: the header, the transactions and the trailer are
+ * written in the order they are given, so a file is written by a single thread.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_LENGTH = 256 * 1024;
+    private static final int RDW_LENGTH = 4;
+    private static final int BLOCK_LENGTH = 1014;
+    private static final int BLOCK_DATA_LENGTH = 1012;
+    private static final int PRE_EDIT_HEADER_LENGTH = 132;
+    private static final byte BLOCK_PADDING = 0x40;
+    private static final byte HEADER_PADDING = ' ';
+
+    private final OutputStream out;
+    private final ISOLayout layout;
+    private final ISOPackager packager;
+    private final boolean blocked;
+    private final byte[] buffer = new byte[BUFFER_LENGTH];
+    private final byte[] rdw = new byte[RDW_LENGTH];
+    private int position;
+    private int blockUsed;
+    private long messages;
+    private long bytes;
+    private boolean started;
+    private boolean closed;
+
+    /**
+     * Constructs a writer of an IPM file of the layout, blocked if the layout is EBCDIC.
+     *
+     * @param out The stream where the IPM file is written, closed with the writer
+     * @param layout The layout of the file, {@link ISOLayout#MASTERCARD_EBCDIC} or {@link ISOLayout#MASTERCARD_ASCII}
+     */
+    public IPMWriter(OutputStream out, ISOLayout layout) {
+        this(out, layout, layout == ISOLayout.MASTERCARD_EBCDIC);
+    }
+
+    /**
+     * Constructs a writer of an IPM file of the layout.
+     *
+     * @param out The stream where the IPM file is written, closed with the writer
+     * @param layout The layout of the file, {@link ISOLayout#MASTERCARD_EBCDIC} or {@link ISOLayout#MASTERCARD_ASCII}
+     * @param blocked Whether the records of an EBCDIC file are blocked in 1014 bytes
+     */
+    public IPMWriter(OutputStream out, ISOLayout layout, boolean blocked) {
+        if (layout != ISOLayout.MASTERCARD_EBCDIC && layout != ISOLayout.MASTERCARD_ASCII) {
+            throw new IllegalArgumentException("ipmparser.writer.invalidlayout");
+        }
+
+        if (blocked && layout != ISOLayout.MASTERCARD_EBCDIC) {
+            throw new IllegalArgumentException("ipmparser.writer.invalidblocking");
+        }
+
+        this.out = out;
+        this.layout = layout;
+        this.packager = ISOPackagerRegistry.getPackager(layout);
+        this.blocked = blocked;
+    }
+
+    /**
+     * Returns the layout of the file.
+     *
+     * @return the layout of the file
+     */
+    public ISOLayout layout() {
+        return layout;
+    }
+
+    /**
+     * Packs the message with the packager of the layout and writes it. The packager of the message is replaced by the
+     * one of the layout.
+     *
+     * @param message The ISO 8583 message, like the header, a transaction or the trailer of the file
+     * @return this writer
+     * @throws ISOException If the message can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public IPMWriter write(ISOMsg message) throws ISOException, IOException {
+        message.setPackager(packager);
+        return write(message.pack());
+    }
+
+    /**
+     * Packs the transaction and writes it. The transaction is packed by the packager it was read or built with, which
+     * must be the one of the layout of the file.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @return this writer
+     * @throws ISOException If the transaction is corrupted or can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public IPMWriter write(ISOTransaction transaction) throws ISOException, IOException {
+        if (transaction.isCorrupted()) {
+            throw new ISOException("ipmparser.writer.corruptedmessage", transaction.error());
+        }
+
+        return write(transaction.pack());
+    }
+
+    /**
+     * Writes a message already packed in the layout of the file, framing it.
+     *
+     * @param message The packed ISO 8583 message
+     * @return this writer
+     * @throws IOException If the file can not be written
+     */
+    public IPMWriter write(byte[] message) throws IOException {
+        if (closed) {
+            throw new IOException("ipmparser.writer.closed");
+        }
+
+        start();
+
+        if (layout == ISOLayout.MASTERCARD_EBCDIC) {
+            writeRdw(message.length);
+        }
+
+        put(message, 0, message.length);
+        messages++;
+
+        return this;
+    }
+
+    /**
+     * Writes all the transactions.
+     *
+     * @param transactions The ISO 8583 transactions, like the ones of an {@link IPMReader}
+     * @return this writer
+     * @throws ISOException If a transaction is corrupted or can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public IPMWriter writeAll(Iterator<ISOTransaction> transactions) throws ISOException, IOException {
+        while (transactions.hasNext()) {
+            write(transactions.next());
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the number of messages written.
+     *
+     * @return the number of messages
+     */
+    public long messages() {
+        return messages;
+    }
+
+    /**
+     * Returns the number of bytes of the file written so far, including the framing.
+     *
+     * @return the number of bytes
+     */
+    public long bytes() {
+        return bytes + position;
+    }
+
+    /**
+     * Writes the bytes assembled so far to the stream and flushes it. A partial block is left open, so flushing does
+     * not change the contents of the file.
+     *
+     * @throws IOException If the file can not be written
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Ends the file, with the empty RDW and the padding of the last block for EBCDIC files, and closes the stream.
+     *
+     * @throws IOException If the file can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        try {
+            start();
+
+            if (layout == ISOLayout.MASTERCARD_EBCDIC) {
+                writeRdw(0);
+            }
+
+            if (blocked) {
+                while (blockUsed < BLOCK_DATA_LENGTH) {
+                    putByte(BLOCK_PADDING);
+                    blockUsed++;
+                }
+
+                pad();
+            }
+
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void start() throws IOException {
+        if (started) {
+            return;
+        }
+
+        started = true;
+
+        if (layout == ISOLayout.MASTERCARD_ASCII) {
+            for (int i = 0; i < PRE_EDIT_HEADER_LENGTH; i++) {
+                putByte(HEADER_PADDING);
+            }
+        }
+    }
+
+    private void writeRdw(int length) throws IOException {
+        rdw[0] = (byte) (length >>> 24);
+        rdw[1] = (byte) (length >>> 16);
+        rdw[2] = (byte) (length >>> 8);
+        rdw[3] = (byte) length;
+        put(rdw, 0, RDW_LENGTH);
+    }
+
+    private void put(byte[] bytes, int offset, int length) throws IOException {
+        final int limit = offset + length;
+
+        while (offset < limit) {
+            if (blocked && blockUsed == BLOCK_DATA_LENGTH) {
+                pad();
+            }
+
+            if (position == buffer.length) {
+                drain();
+            }
+
+            int count = Math.min(limit - offset, buffer.length - position);
+
+            if (blocked) {
+                count = Math.min(count, BLOCK_DATA_LENGTH - blockUsed);
+                blockUsed += count;
+            }
+
+            System.arraycopy(bytes, offset, buffer, position, count);
+            position += count;
+            offset += count;
+        }
+    }
+
+    private void putByte(byte b) throws IOException {
+        if (position == buffer.length) {
+            drain();
+        }
+
+        buffer[position++] = b;
+    }
+
+    private void pad() throws IOException {
+        for (int i = BLOCK_DATA_LENGTH; i < BLOCK_LENGTH; i++) {
+            putByte(BLOCK_PADDING);
+        }
+
+        blockUsed = 0;
+    }
+
+    private void drain() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            bytes += position;
+            position = 0;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package org.versates.ipm.columnar;
+
+import org.versates.ipm.helper.IPMProjection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Column of the columnar output of IPM files: a DE or PDS field and the type its values are stored with.
+ *
+ * @author Ramses Vidor
+ */
+public final class IPMColumn {
+
+    /**
+     * Storage types of the columns.
+     */
+    public enum Type {
+
+        /**
+         * Numeric values stored as fixed-width longs, like amounts in minor units.
+         */
+        LONG,
+
+        /**
+         * Text values of low cardinality, stored once per row group in a dictionary and referenced by code.
+         */
+        DICTIONARY,
+
+        /**
+         * Text values stored as they are.
+         */
+        STRING
+    }
+
+    private static final Set<Integer> AMOUNTS = new HashSet<Integer>(Arrays.asList(4, 5, 6));
+    private static final Set<Integer> CODES = new HashSet<Integer>(Arrays.asList(0, 3, 22, 24, 25, 26, 49, 50, 51));
+
+    private final String name;
+    private final int index;
+    private final boolean pds;
+    private final Type type;
+
+    /**
+     * Constructs a column of a field.
+     *
+     * @param field The field name, like DE4 or PDS0148
+     * @param type The storage type of the values
+     * @throws IllegalArgumentException If the name is not a single valid DE or PDS
+     */
+    public IPMColumn(String field, Type type) {
+        final IPMProjection projection = IPMProjection.parse(field);
+
+        if (projection.size() != 1 || type == null) {
+            throw new IllegalArgumentException("ipmparser.columnar.invalidcolumn");
+        }
+
+        this.name = projection.name(0);
+        this.index = projection.index(0);
+        this.pds = projection.isPds(0);
+        this.type = type;
+    }
+
+    /**
+     * Returns the columns of the projected fields with their default types: the amounts of DE 4, DE 5 and DE 6 as
+     * longs, codes of low cardinality, like the MTI, DE 24, DE 26 and the currency codes, and all the PDS in
+     * dictionaries, and the other DEs as they are.
+     *
+     * @param fields The projected fields
+     * @return the columns of the fields, in the order of the projection
+     */
+    public static List<IPMColumn> of(IPMProjection fields) {
+        final List<IPMColumn> columns = new ArrayList<IPMColumn>(fields.size());
+
+        for (int i = 0; i < fields.size(); i++) {
+            columns.add(new IPMColumn(fields.name(i), defaultType(fields.index(i), fields.isPds(i))));
+        }
+
+        return columns;
+    }
+
+    /**
+     * Returns the name of the column, like DE4 or PDS0148.
+     *
+     * @return the column name
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the DE index or the PDS tag of the column.
+     *
+     * @return the field index
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Checks whether the column holds a PDS.
+     *
+     * @return TRUE if the column is a PDS, FALSE if it is a DE
+     */
+    public boolean isPds() {
+        return pds;
+    }
+
+    /**
+     * Returns the storage type of the column.
+     *
+     * @return the column type
+     */
+    public Type type() {
+        return type;
+    }
+
+    @Override
+    public String toString() {
+        return name + ":" + type;
+    }
+
+    private static Type defaultType(int index, boolean pds) {
+        if (pds || CODES.contains(index)) {
+            return Type.DICTIONARY;
+        }
+
+        return AMOUNTS.contains(index) ? Type.LONG : Type.STRING;
+    }
+
+}
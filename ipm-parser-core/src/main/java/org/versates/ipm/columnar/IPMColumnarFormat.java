@@ -0,0 +1,44 @@
+package org.versates.ipm.columnar;
+
+import java.nio.charset.Charset;
+
+/**
+ * Layout of the columnar files written by {@link IPMColumnarWriter} and read by {@link IPMColumnarReader}.
+ * <p>
+ * The file starts with the magic bytes and the format version, followed by the row groups. Each row group holds one
+ * chunk per column, one after the other, and each chunk starts with a presence bitmap of the rows of the group:
+ * <ul>
+ * <li>LONG chunks hold a big-endian long for each row present;</li>
+ * <li>DICTIONARY and STRING chunks hold an encoding byte. Plain chunks then hold each value present as modified UTF-8,
+ * and dictionary chunks hold the distinct values of the group followed by a code for each row present, one byte wide
+ * for dictionaries of up to 256 values and two bytes wide otherwise.</li>
+ * </ul>
+ * The footer describes the columns and the position and length of every chunk, so a reader can fetch the chunks of one
+ * column without touching the others. The file ends with the position of the footer and the magic bytes.
+ *
+ * @author Ramses Vidor
+ */
+final class IPMColumnarFormat {
+
+    static final byte[] MAGIC = "IPMC".getBytes(Charset.forName("US-ASCII"));
+    static final byte VERSION = 1;
+    static final byte PLAIN = 0;
+    static final byte DICTIONARY = 1;
+    static final int MAX_DICTIONARY = 1 << 16;
+    static final int SMALL_DICTIONARY = 1 << 8;
+    static final int TRAILER_LENGTH = 8 + 4;
+
+    private IPMColumnarFormat() {
+    }
+
+    /**
+     * Returns the length of the presence bitmap of a row group.
+     *
+     * @param rows The number of rows of the group
+     * @return the length of the bitmap, in bytes
+     */
+    static int bitmapLength(int rows) {
+        return (rows + 7) / 8;
+    }
+
+}
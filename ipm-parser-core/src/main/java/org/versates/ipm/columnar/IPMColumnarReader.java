@@ -0,0 +1,274 @@
+package org.versates.ipm.columnar;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reader of the columnar files written by {@link IPMColumnarWriter}. Opening a file only reads its footer; each column
+ * is then read on request, fetching just the chunks of that column from the file, so scanning one column of many files
+ * does not touch the bytes of the other columns.
+ * <p>
+ * Chunks are fetched by positional reads of the file channel, which share no position between columns; only the count
+ * of {@link #bytesRead()} is not synchronized.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMColumnarReader implements Closeable {
+
+    private final FileChannel channel;
+    private final Closeable source;
+    private final List<IPMColumn> columns;
+    private final int[] groups;
+    private final long[][] chunks;
+    private final int rows;
+    private long bytesRead;
+
+    /**
+     * Opens a columnar file.
+     *
+     * @param file The columnar file
+     * @throws IOException If the file can not be read or is not a columnar IPM file
+     */
+    public IPMColumnarReader(File file) throws IOException {
+        this(new RandomAccessFile(file, "r"));
+    }
+
+    /**
+     * Reads the columnar file through a channel, which is not closed by the reader.
+     *
+     * @param channel The channel of the columnar file
+     * @throws IOException If the file can not be read or is not a columnar IPM file
+     */
+    public IPMColumnarReader(FileChannel channel) throws IOException {
+        this(channel, null);
+    }
+
+    private IPMColumnarReader(RandomAccessFile file) throws IOException {
+        this(file.getChannel(), file);
+    }
+
+    private IPMColumnarReader(FileChannel channel, Closeable source) throws IOException {
+        this.channel = channel;
+        this.source = source;
+
+        try {
+            final long size = channel.size();
+
+            if (size < IPMColumnarFormat.MAGIC.length + 1 + IPMColumnarFormat.TRAILER_LENGTH
+                    || !Arrays.equals(read(0, IPMColumnarFormat.MAGIC.length), IPMColumnarFormat.MAGIC)) {
+                throw new IOException("ipmparser.columnar.invalidfile");
+            }
+
+            final DataInputStream trailer = stream(read(size - IPMColumnarFormat.TRAILER_LENGTH,
+                    IPMColumnarFormat.TRAILER_LENGTH));
+            final long footer = trailer.readLong();
+            final byte[] magic = new byte[IPMColumnarFormat.MAGIC.length];
+            trailer.readFully(magic);
+
+            if (!Arrays.equals(magic, IPMColumnarFormat.MAGIC) || footer < 0
+                    || footer > size - IPMColumnarFormat.TRAILER_LENGTH) {
+                throw new IOException("ipmparser.columnar.invalidfile");
+            }
+
+            final DataInputStream in = stream(read(footer, (int) (size - IPMColumnarFormat.TRAILER_LENGTH - footer)));
+            final List<IPMColumn> read = new ArrayList<IPMColumn>();
+
+            for (int i = in.readInt(); i > 0; i--) {
+                read.add(new IPMColumn(in.readUTF(), IPMColumn.Type.values()[in.readByte()]));
+            }
+
+            columns = Collections.unmodifiableList(read);
+            groups = new int[in.readInt()];
+            chunks = new long[groups.length][columns.size() * 2];
+            int total = 0;
+
+            for (int i = 0; i < groups.length; i++) {
+                groups[i] = in.readInt();
+                total += groups[i];
+
+                for (int j = 0; j < chunks[i].length; j++) {
+                    chunks[i][j] = in.readLong();
+                }
+            }
+
+            rows = total;
+            bytesRead = 0;
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (RuntimeException e) {
+            close();
+            throw new IOException("ipmparser.columnar.invalidfile", e);
+        }
+    }
+
+    /**
+     * Returns the columns of the file.
+     *
+     * @return the columns, in the order they were written
+     */
+    public List<IPMColumn> columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of transactions of the file.
+     *
+     * @return the number of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of row groups of the file.
+     *
+     * @return the number of row groups
+     */
+    public int rowGroups() {
+        return groups.length;
+    }
+
+    /**
+     * Returns the number of bytes of column chunks read so far, not counting the footer.
+     *
+     * @return the number of bytes read
+     */
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Reads the values of a LONG column. Absent values are read as 0.
+     *
+     * @param name The column name, like DE4
+     * @return the values of every row of the file
+     * @throws IOException If the column can not be read
+     */
+    public long[] longs(String name) throws IOException {
+        final int column = column(name, true);
+        final long[] values = new long[rows];
+        int row = 0;
+
+        for (int group = 0; group < groups.length; group++) {
+            final ByteBuffer chunk = ByteBuffer.wrap(chunk(group, column));
+            final byte[] presence = bitmap(chunk, groups[group]);
+
+            for (int i = 0; i < groups[group]; i++, row++) {
+                if (isPresent(presence, i)) {
+                    values[row] = chunk.getLong();
+                }
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * Reads the values of a DICTIONARY or STRING column. Absent values are read as null.
+     *
+     * @param name The column name, like DE26 or PDS0148
+     * @return the values of every row of the file
+     * @throws IOException If the column can not be read
+     */
+    public String[] strings(String name) throws IOException {
+        final int column = column(name, false);
+        final String[] values = new String[rows];
+        int row = 0;
+
+        for (int group = 0; group < groups.length; group++) {
+            final byte[] bytes = chunk(group, column);
+            final byte[] presence = Arrays.copyOf(bytes, IPMColumnarFormat.bitmapLength(groups[group]));
+            final DataInputStream in = stream(bytes);
+            in.skipBytes(presence.length);
+
+            final boolean dictionary = in.readByte() == IPMColumnarFormat.DICTIONARY;
+            final String[] entries = dictionary ? new String[in.readInt()] : null;
+
+            for (int i = 0; dictionary && i < entries.length; i++) {
+                entries[i] = in.readUTF();
+            }
+
+            final boolean small = dictionary && entries.length <= IPMColumnarFormat.SMALL_DICTIONARY;
+
+            for (int i = 0; i < groups[group]; i++, row++) {
+                if (!isPresent(presence, i)) {
+                    continue;
+                }
+
+                if (!dictionary) {
+                    values[row] = in.readUTF();
+                } else {
+                    values[row] = entries[small ? in.readUnsignedByte() : in.readUnsignedShort()];
+                }
+            }
+        }
+
+        return values;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    private int column(String name, boolean longs) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).name().equalsIgnoreCase(name)) {
+                if ((columns.get(i).type() == IPMColumn.Type.LONG) != longs) {
+                    throw new IllegalArgumentException("ipmparser.columnar.invalidtype");
+                }
+
+                return i;
+            }
+        }
+
+        throw new IllegalArgumentException("ipmparser.columnar.nosuchcolumn");
+    }
+
+    private byte[] chunk(int group, int column) throws IOException {
+        final byte[] bytes = read(chunks[group][column * 2], (int) chunks[group][(column * 2) + 1]);
+        bytesRead += bytes.length;
+        return bytes;
+    }
+
+    private byte[] read(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("ipmparser.columnar.invalidfile");
+            }
+        }
+
+        return buffer.array();
+    }
+
+    private static byte[] bitmap(ByteBuffer chunk, int rows) {
+        final byte[] presence = new byte[IPMColumnarFormat.bitmapLength(rows)];
+        chunk.get(presence);
+        return presence;
+    }
+
+    private static boolean isPresent(byte[] presence, int row) {
+        return (presence[row >>> 3] & (1 << (row & 7))) != 0;
+    }
+
+    private static DataInputStream stream(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+
+}
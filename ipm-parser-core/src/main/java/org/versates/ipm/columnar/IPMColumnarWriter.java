@@ -0,0 +1,326 @@
+package org.versates.ipm.columnar;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMReaderException;
+import org.versates.ipm.iso.FieldView;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming writer of IPM transactions in a columnar layout (see {@link IPMColumnarFormat}). Transactions are kept in
+ * memory until a row group is complete, and then each column of the group is written as one chunk: amounts as
+ * fixed-width longs, codes of low cardinality through a dictionary of the group, and the other values as they are.
+ * Only one row group is held at a time, so files of any size are written with bounded memory.
+ * <p>
+ * Corrupted transactions are skipped, and fields which are not present, or can not be extracted, are marked as absent.
+ * The footer is only written when the writer is closed.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMColumnarWriter implements Closeable {
+
+    /**
+     * Default number of transactions of each row group.
+     */
+    public static final int DEFAULT_ROW_GROUP = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final List<IPMColumn> columns;
+    private final int rowGroup;
+    private final FieldView view = new FieldView();
+    private final long[][] longs;
+    private final String[][] strings;
+    private final byte[][] presence;
+    private final List<long[]> chunks = new ArrayList<long[]>();
+    private final List<Integer> groups = new ArrayList<Integer>();
+    private long position;
+    private int rows;
+    private boolean closed;
+
+    /**
+     * Constructs a writer of the columns into the stream, with row groups of {@link #DEFAULT_ROW_GROUP} transactions.
+     *
+     * @param out The stream where the columnar file is written
+     * @param columns The columns to be written, in order
+     * @throws IOException If the output can not be written
+     */
+    public IPMColumnarWriter(OutputStream out, List<IPMColumn> columns) throws IOException {
+        this(out, columns, DEFAULT_ROW_GROUP);
+    }
+
+    /**
+     * Constructs a writer of the columns into the stream.
+     *
+     * @param out The stream where the columnar file is written
+     * @param columns The columns to be written, in order
+     * @param rowGroup The number of transactions of each row group
+     * @throws IOException If the output can not be written
+     */
+    public IPMColumnarWriter(OutputStream out, List<IPMColumn> columns, int rowGroup) throws IOException {
+        if (columns.isEmpty() || rowGroup <= 0) {
+            throw new IllegalArgumentException("ipmparser.columnar.invalidlayout");
+        }
+
+        this.out = new DataOutputStream(out);
+        this.columns = new ArrayList<IPMColumn>(columns);
+        this.rowGroup = rowGroup;
+        longs = new long[columns.size()][];
+        strings = new String[columns.size()][];
+        presence = new byte[columns.size()][IPMColumnarFormat.bitmapLength(rowGroup)];
+
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).type() == IPMColumn.Type.LONG) {
+                longs[i] = new long[rowGroup];
+            } else {
+                strings[i] = new String[rowGroup];
+            }
+        }
+
+        this.out.write(IPMColumnarFormat.MAGIC);
+        this.out.writeByte(IPMColumnarFormat.VERSION);
+        position = IPMColumnarFormat.MAGIC.length + 1;
+    }
+
+    /**
+     * Writes all the transactions of an IPM file already in memory.
+     *
+     * @param file The IPM file
+     * @return the number of transactions written
+     * @throws IOException If the output can not be written
+     */
+    public int write(IPMFile file) throws IOException {
+        int written = 0;
+
+        for (ISOTransaction transaction : file.transactions()) {
+            written += write(transaction) ? 1 : 0;
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes all the transactions of an IPM file while it is read.
+     *
+     * @param reader The reader of the IPM file
+     * @return the number of transactions written
+     * @throws IOException If the output can not be written
+     * @throws IPMParserException If the IPM file can not be read
+     */
+    public int write(IPMReader reader) throws IOException, IPMParserException {
+        int written = 0;
+
+        try {
+            while (reader.hasNext()) {
+                written += write(reader.next()) ? 1 : 0;
+            }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        }
+
+        return written;
+    }
+
+    /**
+     * Adds a transaction to the current row group, writing the group when it is complete.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @return TRUE if the transaction was written, FALSE if it was skipped for being corrupted
+     * @throws IOException If the output can not be written
+     */
+    public boolean write(ISOTransaction transaction) throws IOException {
+        if (closed) {
+            throw new IOException("ipmparser.columnar.closed");
+        }
+
+        if (transaction.isCorrupted()) {
+            return false;
+        }
+
+        for (int i = 0; i < columns.size(); i++) {
+            if (read(transaction, columns.get(i))) {
+                presence[i][rows >>> 3] |= (byte) (1 << (rows & 7));
+
+                if (longs[i] != null) {
+                    longs[i][rows] = view.asLong();
+                } else {
+                    strings[i][rows] = view.toString();
+                }
+            }
+        }
+
+        if (++rows == rowGroup) {
+            writeGroup();
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the last row group and the footer, and closes the output.
+     *
+     * @throws IOException If the output can not be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        if (rows > 0) {
+            writeGroup();
+        }
+
+        final long footer = position;
+
+        out.writeInt(columns.size());
+
+        for (IPMColumn column : columns) {
+            out.writeUTF(column.name());
+            out.writeByte(column.type().ordinal());
+        }
+
+        out.writeInt(groups.size());
+
+        for (int i = 0; i < groups.size(); i++) {
+            out.writeInt(groups.get(i));
+
+            for (int j = 0; j < columns.size(); j++) {
+                out.writeLong(chunks.get(i)[j * 2]);
+                out.writeLong(chunks.get(i)[(j * 2) + 1]);
+            }
+        }
+
+        out.writeLong(footer);
+        out.write(IPMColumnarFormat.MAGIC);
+        out.close();
+        closed = true;
+    }
+
+    private boolean read(ISOTransaction transaction, IPMColumn column) {
+        try {
+            if (column.isPds()) {
+                transaction.pds(column.index(), view);
+            } else {
+                transaction.de(column.index(), view);
+            }
+        } catch (ISOException e) {
+            return false;
+        }
+
+        return !view.isEmpty();
+    }
+
+    private void writeGroup() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream chunk = new DataOutputStream(bytes);
+        final long[] offsets = new long[columns.size() * 2];
+
+        for (int i = 0; i < columns.size(); i++) {
+            bytes.reset();
+            chunk.write(presence[i], 0, IPMColumnarFormat.bitmapLength(rows));
+
+            if (longs[i] != null) {
+                writeLongs(chunk, i);
+            } else {
+                writeStrings(chunk, i, columns.get(i).type() == IPMColumn.Type.DICTIONARY);
+            }
+
+            chunk.flush();
+            offsets[i * 2] = position;
+            offsets[(i * 2) + 1] = bytes.size();
+            bytes.writeTo(out);
+            position += bytes.size();
+
+            Arrays.fill(presence[i], (byte) 0);
+        }
+
+        chunks.add(offsets);
+        groups.add(rows);
+        rows = 0;
+    }
+
+    private void writeLongs(DataOutputStream chunk, int column) throws IOException {
+        for (int row = 0; row < rows; row++) {
+            if (isPresent(column, row)) {
+                chunk.writeLong(longs[column][row]);
+            }
+        }
+    }
+
+    private void writeStrings(DataOutputStream chunk, int column, boolean dictionary) throws IOException {
+        final String[] values = strings[column];
+        final Map<String, Integer> codes = dictionary ? encode(column) : null;
+
+        if (codes == null) {
+            chunk.writeByte(IPMColumnarFormat.PLAIN);
+
+            for (int row = 0; row < rows; row++) {
+                if (isPresent(column, row)) {
+                    chunk.writeUTF(values[row]);
+                }
+            }
+        } else {
+            final boolean small = codes.size() <= IPMColumnarFormat.SMALL_DICTIONARY;
+            final String[] entries = new String[codes.size()];
+
+            for (Map.Entry<String, Integer> entry : codes.entrySet()) {
+                entries[entry.getValue()] = entry.getKey();
+            }
+
+            chunk.writeByte(IPMColumnarFormat.DICTIONARY);
+            chunk.writeInt(entries.length);
+
+            for (String entry : entries) {
+                chunk.writeUTF(entry);
+            }
+
+            for (int row = 0; row < rows; row++) {
+                if (isPresent(column, row)) {
+                    final int code = codes.get(values[row]);
+
+                    if (small) {
+                        chunk.writeByte(code);
+                    } else {
+                        chunk.writeShort(code);
+                    }
+                }
+            }
+        }
+
+        Arrays.fill(values, 0, rows, null);
+    }
+
+    private Map<String, Integer> encode(int column) {
+        final Map<String, Integer> codes = new HashMap<String, Integer>();
+
+        for (int row = 0; row < rows; row++) {
+            if (isPresent(column, row) && !codes.containsKey(strings[column][row])) {
+                if (codes.size() == IPMColumnarFormat.MAX_DICTIONARY) {
+                    return null;
+                }
+
+                codes.put(strings[column][row], codes.size());
+            }
+        }
+
+        return codes;
+    }
+
+    private boolean isPresent(int column, int row) {
+        return (presence[column][row >>> 3] & (1 << (row & 7))) != 0;
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMFilter;
+import org.versates.ipm.parser.IPMParserException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Utility class for generation of delimited output, CSV or TSV, of IPM files.
+ *
+ * @author Ramses Vidor
+ */
+public enum DelimitedConversor {
+    SINGLETON;
+
+    /**
+     * Write the projected fields of the transactions of the IPM file as CSV into the stream.
+     * @param filename The IPM file name - must be informed the complete path.
+     * @param layout   The layout ISO 8583 compatible to the file which will be processed.
+     * @param fields   The fields to be written, like DE2,DE4,PDS0148.
+     * @param out      The stream where the CSV output is written.
+     * @return the number of transactions written
+     * @throws IOException If the file can not be read or the output can not be written
+     * @throws IPMParserException If the IPM file can not be processed
+     */
+    public static int csv(String filename, ISOLayout layout, IPMProjection fields, OutputStream out)
+            throws IOException, IPMParserException {
+        return write(filename, layout, fields, IPMDelimitedWriter.CSV, out);
+    }
+
+    /**
+     * Write the projected fields of the transactions of the IPM file as TSV into the stream.
+     * @param filename The IPM file name - must be informed the complete path.
+     * @param layout   The layout ISO 8583 compatible to the file which will be processed.
+     * @param fields   The fields to be written, like DE2,DE4,PDS0148.
+     * @param out      The stream where the TSV output is written.
+     * @return the number of transactions written
+     * @throws IOException If the file can not be read or the output can not be written
+     * @throws IPMParserException If the IPM file can not be processed
+     */
+    public static int tsv(String filename, ISOLayout layout, IPMProjection fields, OutputStream out)
+            throws IOException, IPMParserException {
+        return write(filename, layout, fields, IPMDelimitedWriter.TSV, out);
+    }
+
+    /**
+     * Write the projected fields of the transactions of the IPM file, one row per transaction, into the stream. The
+     * file is read once, by a parser filtered by the projection, so only the projected fields are decoded.
+     * @param filename  The IPM file name - must be informed the complete path.
+     * @param layout    The layout ISO 8583 compatible to the file which will be processed.
+     * @param fields    The fields to be written, like DE2,DE4,PDS0148.
+     * @param delimiter The delimiter of the fields.
+     * @param out       The stream where the output is written.
+     * @return the number of transactions written
+     * @throws IOException If the file can not be read or the output can not be written
+     * @throws IPMParserException If the IPM file can not be processed
+     */
+    public static int write(String filename, ISOLayout layout, IPMProjection fields, char delimiter,
+            OutputStream out) throws IOException, IPMParserException {
+        final IPMReader reader = XMLConversor.open(filename, IPMFileParser.createFileParser(layout,
+                IPMFilter.ALL.withFields(fields.des())));
+
+        try {
+            reader.header();
+            return new IPMDelimitedWriter(out, fields, delimiter).write(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Aggregate the transactions of the IPM file in a single pass, grouping them by some fields and summing others,
+     * and write the summary into the stream, one row per group. No transaction is kept, and only the grouping and
+     * summed fields are decoded.
+     * @param filename  The IPM file name - must be informed the complete path.
+     * @param layout    The layout ISO 8583 compatible to the file which will be processed.
+     * @param keys      The fields to group the transactions by, like DE24,DE26, or null for a single group.
+     * @param sums      The fields to be summed, like DE4, or null to only count the transactions.
+     * @param delimiter The delimiter of the columns of the summary.
+     * @param out       The stream where the summary is written.
+     * @return the aggregation of the transactions
+     * @throws IOException If the file can not be read or the output can not be written
+     * @throws IPMParserException If the IPM file can not be processed
+     */
+    public static IPMAggregator aggregate(String filename, ISOLayout layout, IPMProjection keys, IPMProjection sums,
+            char delimiter, OutputStream out) throws IOException, IPMParserException {
+        IPMFilter filter = IPMFilter.ALL;
+
+        if (keys != null && sums != null) {
+            filter = filter.withFields(IPMProjection.parse(keys + "," + sums).des());
+        } else if (keys != null || sums != null) {
+            filter = filter.withFields(((keys != null) ? keys : sums).des());
+        }
+
+        final IPMReader reader = XMLConversor.open(filename, IPMFileParser.createFileParser(layout, filter));
+
+        try {
+            final IPMAggregator aggregator = new IPMAggregator(keys, sums).addAll(reader);
+            aggregator.write(out, delimiter);
+            return aggregator;
+        } finally {
+            reader.close();
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMReaderException;
+import org.versates.ipm.iso.FieldView;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * Single-pass aggregation of IPM transactions: the transactions are grouped by the values of some fields, like the MTI
+ * and DE 24, the currency code or the MCC, and each group counts its transactions and sums the values of other fields,
+ * like the amounts in minor units. Transactions are added as they are read and are not kept.
+ * <p>
+ * The values of the grouping fields are encoded, one after the other, into a reusable byte key, which is looked up in
+ * an open-addressing table of primitive arrays; the key bytes of each group are stored once, in a shared arena, so no
+ * string nor field instance is created per transaction. The fields are read through a {@link FieldView}, and fields
+ * which can not be extracted are grouped as empty and summed as 0.
+ * <p>
+ * A sum that would overflow a <code>long</code> raises an <code>ArithmeticException</code>. The table and the reusable
+ * key are shared by every {@link #add(ISOTransaction)}, so transactions are added from one thread at a time.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMAggregator {
+
+    private static final Charset KEY_CHARSET = Charset.forName("ISO-8859-1");
+    private static final int INITIAL_GROUPS = 64;
+    private static final int MAX_FIELD_LENGTH = 0xFFFF;
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+    private static final String COUNT = "COUNT";
+    private static final String SUM = "SUM_";
+
+    private final IPMProjection keys;
+    private final IPMProjection sums;
+    private final int keyCount;
+    private final int sumCount;
+    private final FieldView view = new FieldView();
+
+    private byte[] key = new byte[INITIAL_GROUPS];
+    private byte[] arena = new byte[INITIAL_GROUPS * 16];
+    private int[] offsets = new int[INITIAL_GROUPS + 1];
+    private int[] hashes = new int[INITIAL_GROUPS];
+    private long[] counts = new long[INITIAL_GROUPS];
+    private long[] totals;
+    private int[] slots = new int[INITIAL_GROUPS * 2];
+    private int groups;
+    private long transactions;
+
+    /**
+     * Constructs an aggregation of transactions.
+     *
+     * @param keys The fields to group the transactions by, or null to aggregate all of them in a single group
+     * @param sums The fields whose values are summed, or null to only count the transactions
+     */
+    public IPMAggregator(IPMProjection keys, IPMProjection sums) {
+        this.keys = keys;
+        this.sums = sums;
+        keyCount = (keys == null) ? 0 : keys.size();
+        sumCount = (sums == null) ? 0 : sums.size();
+        totals = new long[INITIAL_GROUPS * sumCount];
+    }
+
+    /**
+     * Adds a transaction to its group. Corrupted transactions are ignored.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @return TRUE if the transaction was added, FALSE if it was ignored
+     */
+    public boolean add(ISOTransaction transaction) {
+        if (transaction.isCorrupted()) {
+            return false;
+        }
+
+        int length = 0;
+
+        for (int i = 0; i < keyCount; i++) {
+            length = encode(transaction, i, length);
+        }
+
+        final int group = group(length);
+        counts[group]++;
+        transactions++;
+
+        for (int i = 0; i < sumCount; i++) {
+            final int index = (group * sumCount) + i;
+            totals[index] = Math.addExact(totals[index], read(transaction, sums, i) ? view.asLong() : 0);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds all the transactions, like the ones of an IPM file already in memory.
+     *
+     * @param transactions The ISO 8583 transactions
+     * @return this aggregation
+     */
+    public IPMAggregator addAll(Iterator<ISOTransaction> transactions) {
+        while (transactions.hasNext()) {
+            add(transactions.next());
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds all the transactions of an IPM file while it is read.
+     *
+     * @param reader The reader of the IPM file
+     * @return this aggregation
+     * @throws IPMParserException If the IPM file can not be read
+     */
+    public IPMAggregator addAll(IPMReader reader) throws IPMParserException {
+        try {
+            return addAll((Iterator<ISOTransaction>) reader);
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        }
+    }
+
+    /**
+     * Returns the number of groups. Groups are numbered in the order they were first found.
+     *
+     * @return the number of groups
+     */
+    public int groups() {
+        return groups;
+    }
+
+    /**
+     * Returns the number of transactions added to all the groups.
+     *
+     * @return the number of transactions
+     */
+    public long transactions() {
+        return transactions;
+    }
+
+    /**
+     * Returns the value of a grouping field of a group.
+     *
+     * @param group The group, from 0 to {@link #groups()} - 1
+     * @param field The position of the field in the grouping fields
+     * @return the value of the field, empty if it was absent
+     */
+    public String key(int group, int field) {
+        int position = offsets[group];
+
+        for (int i = 0; i < field; i++) {
+            position += 2 + length(position);
+        }
+
+        return new String(arena, position + 2, length(position), KEY_CHARSET);
+    }
+
+    /**
+     * Returns the number of transactions of a group.
+     *
+     * @param group The group, from 0 to {@link #groups()} - 1
+     * @return the number of transactions
+     */
+    public long count(int group) {
+        return counts[group];
+    }
+
+    /**
+     * Returns the sum of a summed field over the transactions of a group.
+     *
+     * @param group The group, from 0 to {@link #groups()} - 1
+     * @param field The position of the field in the summed fields
+     * @return the sum of the values of the field
+     */
+    public long sum(int group, int field) {
+        return totals[(group * sumCount) + field];
+    }
+
+    /**
+     * Writes the summary of the aggregation as delimited text, in UTF-8: a row with the names of the columns, then one
+     * row per group, ordered by the values of the grouping fields, with those values, the count of transactions and
+     * the sums. The values are escaped like the ones of an {@link IPMDelimitedWriter}.
+     *
+     * @param out The stream where the summary is written, which is flushed but not closed
+     * @param delimiter The delimiter of the columns, {@link IPMDelimitedWriter#CSV} or {@link IPMDelimitedWriter#TSV}
+     * @throws IOException If the output can not be written
+     */
+    public void write(OutputStream out, char delimiter) throws IOException {
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charset.forName("UTF-8")));
+
+        for (int i = 0; i < keyCount; i++) {
+            writer.append(keys.name(i)).append(delimiter);
+        }
+
+        writer.append(COUNT);
+
+        for (int i = 0; i < sumCount; i++) {
+            writer.append(delimiter).append(SUM).append(sums.name(i));
+        }
+
+        writer.append('\n');
+
+        for (Integer group : sorted()) {
+            for (int i = 0; i < keyCount; i++) {
+                writer.append(IPMDelimitedWriter.cell(key(group, i), delimiter)).append(delimiter);
+            }
+
+            writer.append(String.valueOf(counts[group]));
+
+            for (int i = 0; i < sumCount; i++) {
+                writer.append(delimiter).append(String.valueOf(sum(group, i)));
+            }
+
+            writer.append('\n');
+        }
+
+        writer.flush();
+    }
+
+    private boolean read(ISOTransaction transaction, IPMProjection fields, int field) {
+        try {
+            if (fields.isPds(field)) {
+                transaction.pds(fields.index(field), view);
+            } else {
+                transaction.de(fields.index(field), view);
+            }
+        } catch (ISOException e) {
+            return false;
+        }
+
+        return !view.isEmpty();
+    }
+
+    private int encode(ISOTransaction transaction, int field, int position) {
+        final int length = read(transaction, keys, field) ? Math.min(view.length(), MAX_FIELD_LENGTH) : 0;
+
+        if (position + 2 + length > key.length) {
+            key = Arrays.copyOf(key, Math.max(key.length * 2, position + 2 + length));
+        }
+
+        key[position] = (byte) (length >>> 8);
+        key[position + 1] = (byte) length;
+
+        for (int i = 0; i < length; i++) {
+            final char c = view.charAt(i);
+            key[position + 2 + i] = (byte) ((c <= 0xFF) ? c : '?');
+        }
+
+        return position + 2 + length;
+    }
+
+    private int group(int length) {
+        int hash = FNV_OFFSET;
+
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ (key[i] & 0xFF)) * FNV_PRIME;
+        }
+
+        final int mask = slots.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            final int group = slots[slot] - 1;
+
+            if (group < 0) {
+                return insert(slot, hash, length);
+            } else if (hashes[group] == hash && equals(group, length)) {
+                return group;
+            }
+        }
+    }
+
+    private boolean equals(int group, int length) {
+        final int start = offsets[group];
+
+        if (offsets[group + 1] - start != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (arena[start + i] != key[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int insert(int slot, int hash, int length) {
+        final int group = groups++;
+        final int start = offsets[group];
+
+        if (groups == hashes.length) {
+            final int capacity = hashes.length * 2;
+            offsets = Arrays.copyOf(offsets, capacity + 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            totals = Arrays.copyOf(totals, capacity * sumCount);
+        }
+
+        if (start + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, start + length));
+        }
+
+        System.arraycopy(key, 0, arena, start, length);
+        offsets[group + 1] = start + length;
+        hashes[group] = hash;
+        slots[slot] = group + 1;
+
+        if (groups * 2 > slots.length) {
+            rehash();
+        }
+
+        return group;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        final int mask = slots.length - 1;
+
+        for (int group = 0; group < groups; group++) {
+            int slot = hashes[group] & mask;
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = group + 1;
+        }
+    }
+
+    private int length(int position) {
+        return ((arena[position] & 0xFF) << 8) | (arena[position + 1] & 0xFF);
+    }
+
+    private Integer[] sorted() {
+        final Integer[] order = new Integer[groups];
+
+        for (int i = 0; i < groups; i++) {
+            order[i] = i;
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                for (int i = 0; i < keyCount; i++) {
+                    final int comparison = key(a, i).compareTo(key(b, i));
+
+                    if (comparison != 0) {
+                        return comparison;
+                    }
+                }
+
+                return 0;
+            }
+        });
+
+        return order;
+    }
+
+}
@@ -0,0 +1,148 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.iso.FieldView;
+import org.versates.ipm.iso.ISOTransaction;
+import org.jpos.iso.ISOException;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Totals of an amount DE field, DE 4, DE 5 or DE 6, by currency, for reconciling IPM files. The amounts are summed in
+ * the minor units of their currency, in <code>long</code>, with no decimal arithmetic and no field instances created
+ * per transaction; the currency code comes from DE 49, DE 50 or DE 51 and its exponent from PDS 0148, and the exact
+ * total is only built when it is requested.
+ * <p>
+ * A total that would overflow a <code>long</code> raises an <code>ArithmeticException</code>. The totals are updated in
+ * place by each {@link #add(ISOTransaction)}, without synchronization.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMAmountTotals {
+
+    private static final int CURRENCIES = 1000;
+    private static final int FIRST_AMOUNT = 4;
+    private static final int LAST_AMOUNT = 6;
+    private static final int AMOUNT_TO_CURRENCY_CODE = 45;
+
+    private final int amount;
+    private final FieldView currency = new FieldView();
+    private final long[] totals = new long[CURRENCIES];
+    private final int[] counts = new int[CURRENCIES];
+    private final int[] exponents = new int[CURRENCIES];
+
+    /**
+     * Constructs the totals of an amount DE field.
+     *
+     * @param amount The index of the amount DE field, DE 4, DE 5 or DE 6
+     */
+    public IPMAmountTotals(int amount) {
+        if (amount < FIRST_AMOUNT || amount > LAST_AMOUNT) {
+            throw new IllegalArgumentException("ipmparser.totals.invalidamount");
+        }
+
+        this.amount = amount;
+        Arrays.fill(exponents, -1);
+    }
+
+    /**
+     * Adds the amount of the transaction to the total of its currency. Corrupted transactions and transactions without
+     * the amount are ignored; amounts without a valid currency code are added to currency 0.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @return these totals
+     * @throws ISOException If the fields of the transaction can not be extracted
+     */
+    public IPMAmountTotals add(ISOTransaction transaction) throws ISOException {
+        if (transaction.isCorrupted() || !transaction.hasDe(amount)) {
+            return this;
+        }
+
+        final int code = transaction.de(amount + AMOUNT_TO_CURRENCY_CODE, currency).asInt();
+        final int index = (code > 0 && code < CURRENCIES) ? code : 0;
+
+        totals[index] = Math.addExact(totals[index], transaction.minorUnits(amount));
+        counts[index]++;
+
+        if (exponents[index] < 0) {
+            exponents[index] = transaction.exponent(amount);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds the amounts of all the transactions, like the ones of an IPM file being read.
+     *
+     * @param transactions The ISO 8583 transactions
+     * @return these totals
+     * @throws ISOException If the fields of a transaction can not be extracted
+     */
+    public IPMAmountTotals addAll(Iterator<ISOTransaction> transactions) throws ISOException {
+        while (transactions.hasNext()) {
+            add(transactions.next());
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the currency codes with at least one amount added, in ascending order.
+     *
+     * @return the numeric currency codes
+     */
+    public int[] currencies() {
+        int size = 0;
+        final int[] currencies = new int[CURRENCIES];
+
+        for (int i = 0; i < CURRENCIES; i++) {
+            if (counts[i] > 0) {
+                currencies[size++] = i;
+            }
+        }
+
+        return Arrays.copyOf(currencies, size);
+    }
+
+    /**
+     * Returns the number of amounts added in the currency.
+     *
+     * @param currency The numeric currency code
+     * @return the number of amounts
+     */
+    public int count(int currency) {
+        return counts[currency];
+    }
+
+    /**
+     * Returns the total of the currency in minor units.
+     *
+     * @param currency The numeric currency code
+     * @return the total in minor units
+     */
+    public long minorUnits(int currency) {
+        return totals[currency];
+    }
+
+    /**
+     * Returns the exponent of the currency, taken from the first transaction which informed it.
+     *
+     * @param currency The numeric currency code
+     * @return the currency exponent, or -1 if no transaction informed it
+     */
+    public int exponent(int currency) {
+        return exponents[currency];
+    }
+
+    /**
+     * Returns the exact total of the currency, scaled by its exponent.
+     *
+     * @param currency The numeric currency code
+     * @return the total, with no decimal places if the currency exponent is unknown
+     */
+    public BigDecimal total(int currency) {
+        return BigDecimal.valueOf(totals[currency], Math.max(0, exponents[currency]));
+    }
+
+}
@@ -0,0 +1,434 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMParserException;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Batch conversion of many IPM files on a pool of workers. Each file is converted by one worker into its own output
+ * file, in an output directory, and a failure only affects the file which failed, whose partial output is deleted so
+ * it is never taken for a converted file. The conversions keep no shared state: the parsers are shared and stateless,
+ * and each file has its own reader and writer.
+ * <p>
+ * The outcome of every file, with its size, its number of transactions and the time spent, is returned in the order the
+ * files were given, and can be printed as a report with the throughput of the batch.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMBatch {
+
+    private static final int BUFFER_LENGTH = 256 * 1024;
+    private static final String GLOB_CHARACTERS = "*?[{";
+    private static final String REPORT_ROW = "{0}\t{1}\t{2}\t{3}\t{4}\t{5}";
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final String GZIP = ".gz";
+
+    /**
+     * Conversion of one IPM file into an output stream. Conversions are called concurrently by the workers and must
+     * keep no state between calls.
+     */
+    public interface Conversion {
+
+        /**
+         * Returns the extension of the output files, like <code>xml</code>.
+         *
+         * @return the extension, without the dot
+         */
+        String extension();
+
+        /**
+         * Converts an IPM file.
+         *
+         * @param filename The IPM file name - must be informed the complete path
+         * @param out The stream where the output is written
+         * @return the number of transactions converted
+         * @throws IOException If the file can not be read or the output can not be written
+         * @throws IPMParserException If the IPM file can not be processed
+         */
+        long convert(String filename, OutputStream out) throws IOException, IPMParserException;
+
+    }
+
+    /**
+     * Outcome of the conversion of one IPM file.
+     */
+    public static final class Result {
+
+        private final File file;
+        private final File output;
+        private final long transactions;
+        private final long nanos;
+        private final Exception error;
+
+        private Result(File file, File output, long transactions, long nanos, Exception error) {
+            this.file = file;
+            this.output = output;
+            this.transactions = transactions;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        /**
+         * Returns the IPM file converted.
+         *
+         * @return the input file
+         */
+        public File file() {
+            return file;
+        }
+
+        /**
+         * Returns the output file of the conversion. The file does not exist if the conversion failed.
+         *
+         * @return the output file
+         */
+        public File output() {
+            return output;
+        }
+
+        /**
+         * Checks whether the file was converted.
+         *
+         * @return TRUE if the conversion succeeded, FALSE otherwise
+         */
+        public boolean isConverted() {
+            return error == null;
+        }
+
+        /**
+         * Returns the failure of the conversion.
+         *
+         * @return the failure, or null if the file was converted
+         */
+        public Exception error() {
+            return error;
+        }
+
+        /**
+         * Returns the number of transactions converted.
+         *
+         * @return the number of transactions, 0 if the conversion failed
+         */
+        public long transactions() {
+            return transactions;
+        }
+
+        /**
+         * Returns the time spent converting the file.
+         *
+         * @return the elapsed time, in nanoseconds
+         */
+        public long nanos() {
+            return nanos;
+        }
+
+    }
+
+    private final Conversion conversion;
+    private final File directory;
+    private final int workers;
+    private final boolean gzip;
+
+    /**
+     * Constructs a batch of conversions.
+     *
+     * @param conversion The conversion of each file
+     * @param directory The directory where the output files are written, created if needed
+     * @param workers The number of files converted at the same time
+     */
+    public IPMBatch(Conversion conversion, File directory, int workers) {
+        this(conversion, directory, workers, false);
+    }
+
+    /**
+     * Constructs a batch of conversions, optionally compressing the output files with gzip.
+     *
+     * @param conversion The conversion of each file
+     * @param directory The directory where the output files are written, created if needed
+     * @param workers The number of files converted at the same time
+     * @param gzip Whether the output files are compressed, with the <code>gz</code> extension
+     */
+    public IPMBatch(Conversion conversion, File directory, int workers, boolean gzip) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("ipmparser.batch.invalidworkers");
+        }
+
+        this.conversion = conversion;
+        this.directory = directory;
+        this.workers = workers;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Returns the conversion of IPM files into XML.
+     *
+     * @param layout The layout ISO 8583 compatible to the files
+     * @return the XML conversion
+     */
+    public static Conversion xml(final ISOLayout layout) {
+        return new Conversion() {
+            @Override
+            public String extension() {
+                return "xml";
+            }
+
+            @Override
+            public long convert(String filename, OutputStream out) throws IOException, IPMParserException {
+                return XMLConversor.convert(filename, layout, out);
+            }
+        };
+    }
+
+    /**
+     * Returns the conversion of the projected fields of IPM files into delimited text.
+     *
+     * @param layout The layout ISO 8583 compatible to the files
+     * @param fields The fields to be written
+     * @param delimiter The delimiter of the fields, {@link IPMDelimitedWriter#CSV} or {@link IPMDelimitedWriter#TSV}
+     * @return the delimited conversion
+     */
+    public static Conversion delimited(final ISOLayout layout, final IPMProjection fields, final char delimiter) {
+        return new Conversion() {
+            @Override
+            public String extension() {
+                return extensionOf(delimiter);
+            }
+
+            @Override
+            public long convert(String filename, OutputStream out) throws IOException, IPMParserException {
+                return DelimitedConversor.write(filename, layout, fields, delimiter, out);
+            }
+        };
+    }
+
+    /**
+     * Returns the conversion of IPM files into summaries of their transactions.
+     *
+     * @param layout The layout ISO 8583 compatible to the files
+     * @param keys The fields to group the transactions by, or null for a single group
+     * @param sums The fields to be summed, or null to only count the transactions
+     * @param delimiter The delimiter of the columns, {@link IPMDelimitedWriter#CSV} or {@link IPMDelimitedWriter#TSV}
+     * @return the summary conversion
+     */
+    public static Conversion summary(final ISOLayout layout, final IPMProjection keys, final IPMProjection sums,
+            final char delimiter) {
+        return new Conversion() {
+            @Override
+            public String extension() {
+                return extensionOf(delimiter);
+            }
+
+            @Override
+            public long convert(String filename, OutputStream out) throws IOException, IPMParserException {
+                return DelimitedConversor.aggregate(filename, layout, keys, sums, delimiter, out).transactions();
+            }
+        };
+    }
+
+    /**
+     * Lists the IPM files of a path: the regular files of a directory, the files whose names match a glob, like
+     * <code>/data/clearing/*.ipm</code>, or the file itself. Only the last element of the path may hold a glob.
+     *
+     * @param path The directory, glob or file
+     * @return the files, ordered by name
+     * @throws IOException If the directory of the files can not be listed
+     */
+    public static List<File> files(String path) throws IOException {
+        final File file = new File(path);
+
+        if (file.isDirectory()) {
+            return list(file, null);
+        }
+
+        if (!isGlob(file.getName())) {
+            return Collections.singletonList(file);
+        }
+
+        final File parent = file.getAbsoluteFile().getParentFile();
+
+        if (isGlob(parent.getPath())) {
+            throw new IOException(MessageFormat.format("ipmparser.batch.invalidglob: {0}", path));
+        }
+
+        return list(parent, FileSystems.getDefault().getPathMatcher("glob:" + file.getName()));
+    }
+
+    /**
+     * Converts the files on the pool of workers, waiting for all of them to finish.
+     *
+     * @param files The IPM files to be converted
+     * @return the outcome of each file, in the order of the files
+     * @throws IOException If the output directory can not be created
+     * @throws InterruptedException If the batch is interrupted while waiting for the conversions
+     */
+    public List<Result> run(List<File> files) throws IOException, InterruptedException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(MessageFormat.format("ipmparser.batch.invaliddirectory: {0}", directory));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, Math.max(1, files.size())));
+        final List<Future<Result>> futures = new ArrayList<Future<Result>>(files.size());
+        final List<Result> results = new ArrayList<Result>(files.size());
+
+        try {
+            for (final File file : files) {
+                futures.add(executor.submit(new Callable<Result>() {
+                    @Override
+                    public Result call() {
+                        return convert(file);
+                    }
+                }));
+            }
+
+            for (Future<Result> future : futures) {
+                results.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return results;
+    }
+
+    /**
+     * Prints the report of a batch: one row per file, with its status, transactions, size, time and throughput, and a
+     * last row with the totals of the batch, whose throughput takes the elapsed time of the whole batch.
+     *
+     * @param results The outcome of the files
+     * @param nanos The elapsed time of the whole batch, in nanoseconds
+     * @param out The stream where the report is printed
+     */
+    public static void report(List<Result> results, long nanos, PrintStream out) {
+        long transactions = 0;
+        long bytes = 0;
+        int failed = 0;
+
+        out.println(MessageFormat.format(REPORT_ROW, "STATUS", "FILE", "TRANSACTIONS", "BYTES", "MILLIS", "MB/S"));
+
+        for (Result result : results) {
+            final long length = result.file().length();
+            final String row = MessageFormat.format(REPORT_ROW, result.isConverted() ? "OK" : "FAILED", result.file(),
+                    String.valueOf(result.transactions()), String.valueOf(length),
+                    String.valueOf(result.nanos() / 1000000), throughput(length, result.nanos()));
+            out.println(result.isConverted() ? row : row + "\t" + result.error().getMessage());
+
+            transactions += result.transactions();
+            bytes += length;
+            failed += result.isConverted() ? 0 : 1;
+        }
+
+        out.println(MessageFormat.format(REPORT_ROW, (failed == 0) ? "OK" : "FAILED " + failed,
+                results.size() + " files", String.valueOf(transactions), String.valueOf(bytes),
+                String.valueOf(nanos / 1000000), throughput(bytes, nanos)));
+        out.flush();
+    }
+
+    private Result convert(File file) {
+        final File output = new File(directory, file.getName() + "." + conversion.extension() + (gzip ? GZIP : ""));
+        final long start = System.nanoTime();
+
+        try {
+            final OutputStream out = open(output, gzip);
+
+            try {
+                final long transactions = conversion.convert(file.getPath(), out);
+                out.flush();
+                return new Result(file, output, transactions, System.nanoTime() - start, null);
+            } finally {
+                out.close();
+            }
+        } catch (Exception e) {
+            output.delete();
+            return new Result(file, output, 0, System.nanoTime() - start, e);
+        }
+    }
+
+    /**
+     * Opens a buffered stream into a file, optionally compressing what is written with gzip.
+     *
+     * @param file The file to be written
+     * @param gzip Whether the contents are compressed
+     * @return the stream into the file
+     * @throws IOException If the file can not be created
+     */
+    public static OutputStream open(File file, boolean gzip) throws IOException {
+        return open(new FileOutputStream(file), gzip);
+    }
+
+    /**
+     * Wraps a stream with a large buffer, optionally compressing what is written with gzip, so small writes do not
+     * reach the stream one by one. Closing the returned stream finishes the compression and closes the stream.
+     *
+     * @param out The stream to be written
+     * @param gzip Whether the contents are compressed
+     * @return the buffered stream
+     * @throws IOException If the compression can not be started
+     */
+    public static OutputStream open(OutputStream out, boolean gzip) throws IOException {
+        if (gzip) {
+            return new BufferedOutputStream(new GZIPOutputStream(out, BUFFER_LENGTH), BUFFER_LENGTH);
+        }
+
+        return new BufferedOutputStream(out, BUFFER_LENGTH);
+    }
+
+    private static String extensionOf(char delimiter) {
+        return (delimiter == IPMDelimitedWriter.TSV) ? "tsv" : "csv";
+    }
+
+    private static boolean isGlob(String name) {
+        for (int i = 0; i < GLOB_CHARACTERS.length(); i++) {
+            if (name.indexOf(GLOB_CHARACTERS.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static List<File> list(File directory, PathMatcher matcher) throws IOException {
+        final File[] children = directory.listFiles();
+
+        if (children == null) {
+            throw new IOException(MessageFormat.format("ipmparser.batch.invaliddirectory: {0}", directory));
+        }
+
+        final List<File> files = new ArrayList<File>();
+
+        for (File child : children) {
+            if (child.isFile() && (matcher == null || matcher.matches(child.toPath().getFileName()))) {
+                files.add(child);
+            }
+        }
+
+        Collections.sort(files);
+
+        return files;
+    }
+
+    private static String throughput(long bytes, long nanos) {
+        return String.format(Locale.ROOT, "%.2f", (nanos == 0) ? 0 : (bytes / MEGABYTE) / (nanos / 1e9));
+    }
+
+}
@@ -0,0 +1,290 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMReaderException;
+import org.versates.ipm.iso.FieldView;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMParserException;
+import org.jpos.iso.ISOException;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Streaming writer of IPM transactions as delimited text, CSV or TSV, with one row per transaction and one column per
+ * field of a projection. The fields are read through a {@link FieldView}, so no field instance is created, and the
+ * rows are encoded in UTF-8 straight into a byte buffer, with no intermediate strings. With a lazy parser (see
+ * {@link org.versates.ipm.parser.IPMFileParser#createFileParser(org.versates.ipm.iso.packager.ISOLayout, boolean)}),
+ * only the projected fields are ever decoded.
+ * <p>
+ * The first row holds the names of the fields. Corrupted transactions are skipped, and fields which can not be
+ * extracted are written empty, like in the XML output. CSV values holding the delimiter, quotes or line breaks are
+ * quoted; TSV values have tabs and line breaks replaced by spaces.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMDelimitedWriter implements Closeable, Flushable {
+
+    /**
+     * Delimiter of CSV output.
+     */
+    public static final char CSV = ',';
+
+    /**
+     * Delimiter of TSV output.
+     */
+    public static final char TSV = '\t';
+
+    private static final int BUFFER_LENGTH = 64 * 1024;
+    private static final int MAX_CHAR_LENGTH = 4;
+    private static final char QUOTE = '"';
+    private static final char LINE_BREAK = '\n';
+
+    private final OutputStream out;
+    private final IPMProjection fields;
+    private final char delimiter;
+    private final FieldView view = new FieldView();
+    private final byte[] buffer = new byte[BUFFER_LENGTH];
+    private int position;
+    private int rows;
+
+    /**
+     * Constructs a writer of the projected fields into the stream.
+     *
+     * @param out The stream where the rows are written
+     * @param fields The fields to be written, in order
+     * @param delimiter The delimiter of the fields, {@link #CSV} or {@link #TSV}
+     */
+    public IPMDelimitedWriter(OutputStream out, IPMProjection fields, char delimiter) {
+        this.out = out;
+        this.fields = fields;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Writes the header row and the rows of all the transactions of an IPM file while it is read, then flushes the
+     * output.
+     *
+     * @param reader The reader of the IPM file
+     * @return the number of transaction rows written
+     * @throws IOException If the output can not be written
+     * @throws IPMParserException If the IPM file can not be read
+     */
+    public int write(IPMReader reader) throws IOException, IPMParserException {
+        header();
+
+        try {
+            while (reader.hasNext()) {
+                write(reader.next());
+            }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        }
+
+        flush();
+
+        return rows;
+    }
+
+    /**
+     * Writes the row with the names of the fields.
+     *
+     * @throws IOException If the output can not be written
+     */
+    public void header() throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                put(delimiter);
+            }
+
+            put(fields.name(i));
+        }
+
+        put(LINE_BREAK);
+    }
+
+    /**
+     * Writes the row of a transaction, unless it is corrupted.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @throws IOException If the output can not be written
+     */
+    public void write(ISOTransaction transaction) throws IOException {
+        if (transaction.isCorrupted()) {
+            return;
+        }
+
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                put(delimiter);
+            }
+
+            value(transaction, i);
+        }
+
+        put(LINE_BREAK);
+        rows++;
+    }
+
+    /**
+     * Returns the number of transaction rows written.
+     *
+     * @return the number of rows, not counting the header row
+     */
+    public int rows() {
+        return rows;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void value(ISOTransaction transaction, int field) throws IOException {
+        try {
+            if (fields.isPds(field)) {
+                transaction.pds(fields.index(field), view);
+            } else {
+                transaction.de(fields.index(field), view);
+            }
+        } catch (ISOException e) {
+            return;
+        }
+
+        if (delimiter == TSV) {
+            putReplacing(view);
+        } else if (needsQuotes(view, delimiter)) {
+            putQuoted(view);
+        } else {
+            put(view);
+        }
+    }
+
+    /**
+     * Escapes a value to be written as a cell of delimited text, like the writer does: CSV values holding the
+     * delimiter, quotes or line breaks are quoted, and TSV values have tabs and line breaks replaced by spaces.
+     *
+     * @param value The value of the cell
+     * @param delimiter The delimiter of the cells, {@link #CSV} or {@link #TSV}
+     * @return the escaped value
+     */
+    static String cell(String value, char delimiter) {
+        if (delimiter == TSV) {
+            return value.replace(TSV, ' ').replace(LINE_BREAK, ' ').replace('\r', ' ');
+        } else if (!needsQuotes(value, delimiter)) {
+            return value;
+        }
+
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append(QUOTE);
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == QUOTE) {
+                quoted.append(QUOTE);
+            }
+
+            quoted.append(c);
+        }
+
+        return quoted.append(QUOTE).toString();
+    }
+
+    private static boolean needsQuotes(CharSequence value, char delimiter) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == delimiter || c == QUOTE || c == LINE_BREAK || c == '\r') {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void putQuoted(CharSequence value) throws IOException {
+        put(QUOTE);
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (c == QUOTE) {
+                put(QUOTE);
+            }
+
+            put(c);
+        }
+
+        put(QUOTE);
+    }
+
+    private void putReplacing(CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            put((c == TSV || c == LINE_BREAK || c == '\r') ? ' ' : c);
+        }
+    }
+
+    private void put(CharSequence value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+
+            if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                putCodePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else {
+                put(c);
+            }
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (c < 0x80) {
+            if (position == buffer.length) {
+                drain();
+            }
+
+            buffer[position++] = (byte) c;
+        } else {
+            putCodePoint(Character.isSurrogate(c) ? '?' : c);
+        }
+    }
+
+    private void putCodePoint(int c) throws IOException {
+        if (position + MAX_CHAR_LENGTH > buffer.length) {
+            drain();
+        }
+
+        if (c < 0x80) {
+            buffer[position++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (c < 0x10000) {
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+            buffer[position++] = (byte) (0xF0 | (c >> 18));
+            buffer[position++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void drain() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+}
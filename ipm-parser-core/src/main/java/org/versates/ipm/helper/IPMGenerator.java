@@ -0,0 +1,224 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMWriter;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Generator of synthetic IPM files for capacity tests: a header (1644/697), a mix of first presentments (1240/200),
+ * chargebacks (1442/450) and fee collections (1740/700) in configurable proportions, and a trailer (1644/695) with the
+ * message count and the amount checksum of the file. The values, like the PANs, amounts and MCCs, are drawn from a
+ * random generator with the given seed, so the same seed and volume always produce the same file.
+ * <p>
+ * Messages are built one at a time and handed to an {@link IPMWriter}, which packs and frames them in its layout, so
+ * files of any size are generated in constant memory.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMGenerator {
+
+    /**
+     * Default proportion of first presentments.
+     */
+    public static final int DEFAULT_PRESENTMENTS = 90;
+
+    /**
+     * Default proportion of chargebacks.
+     */
+    public static final int DEFAULT_CHARGEBACKS = 8;
+
+    /**
+     * Default proportion of fee collections.
+     */
+    public static final int DEFAULT_FEES = 2;
+
+    private static final String CONTROL_MTI = "1644";
+    private static final String PRESENTMENT_MTI = "1240";
+    private static final String CHARGEBACK_MTI = "1442";
+    private static final String FEE_MTI = "1740";
+    private static final String FUNCTION_CODE_HEADER = "697";
+    private static final String FUNCTION_CODE_TRAILER = "695";
+    private static final String FUNCTION_CODE_PRESENTMENT = "200";
+    private static final String FUNCTION_CODE_CHARGEBACK = "450";
+    private static final String FUNCTION_CODE_FEE = "700";
+    private static final String FILE_TYPE = "002";
+    private static final String PROCESSOR = "00000002064";
+    private static final String BUSINESS_DATE = "141020";
+    private static final String CURRENCY = "986";
+    private static final String CURRENCY_EXPONENT = "9862";
+    private static final String[] MCCS = {"5411", "5812", "5999", "4121", "5541", "5732", "7011", "5311"};
+    private static final String[] CHARGEBACK_REASONS = {"4808", "4834", "4837", "4853", "4863"};
+    private static final String[] FEE_REASONS = {"7600", "7601", "7602", "7604"};
+    private static final String[] MERCHANTS = {"SUPERMERCADO", "RESTAURANTE", "POSTO", "FARMACIA", "LOJA", "HOTEL"};
+    private static final String[] CITIES = {"SAO PAULO", "RIO DE JANEIRO", "CURITIBA", "PORTO ALEGRE", "RECIFE"};
+    private static final long MAX_AMOUNT = 10000000;
+    private static final long MAX_CHECKSUM = 10000000000000000L;
+
+    private final long seed;
+    private final int presentments;
+    private final int chargebacks;
+    private final int total;
+    private final char[] digits = new char[32];
+
+    /**
+     * Constructs a generator with the default mix of messages.
+     *
+     * @param seed The seed of the generated values
+     */
+    public IPMGenerator(long seed) {
+        this(seed, DEFAULT_PRESENTMENTS, DEFAULT_CHARGEBACKS, DEFAULT_FEES);
+    }
+
+    /**
+     * Constructs a generator with the given mix of messages. The proportions are relative to their sum, so 90, 8 and 2
+     * generate the same mix as 45, 4 and 1.
+     *
+     * @param seed The seed of the generated values
+     * @param presentments The proportion of first presentments
+     * @param chargebacks The proportion of chargebacks
+     * @param fees The proportion of fee collections
+     */
+    public IPMGenerator(long seed, int presentments, int chargebacks, int fees) {
+        if (presentments < 0 || chargebacks < 0 || fees < 0 || presentments + chargebacks + fees <= 0) {
+            throw new IllegalArgumentException("ipmparser.generator.invalidmix");
+        }
+
+        this.seed = seed;
+        this.presentments = presentments;
+        this.chargebacks = chargebacks;
+        this.total = presentments + chargebacks + fees;
+    }
+
+    /**
+     * Generates a file: writes the header, the transactions and the trailer. The writer is not closed.
+     *
+     * @param writer The writer of the file
+     * @param transactions The number of transactions between the header and the trailer
+     * @return the number of messages written, the transactions plus the header and the trailer
+     * @throws ISOException If a message can not be packed
+     * @throws IOException If the file can not be written
+     */
+    public long write(IPMWriter writer, long transactions) throws ISOException, IOException {
+        final Random random = new Random(seed);
+        long checksum = 0;
+
+        writer.write(header(random));
+
+        for (long i = 1; i <= transactions; i++) {
+            final long amount = 1 + (long) (random.nextDouble() * MAX_AMOUNT);
+            checksum = (checksum + amount) % MAX_CHECKSUM;
+            writer.write(transaction(random, i + 1, amount));
+        }
+
+        writer.write(trailer(transactions + 2, checksum));
+
+        return transactions + 2;
+    }
+
+    private ISOMsg header(Random random) throws ISOException {
+        final ISOMsg header = message(CONTROL_MTI, FUNCTION_CODE_HEADER, 1);
+        header.set(pds(105, FILE_TYPE + BUSINESS_DATE + PROCESSOR + digits(1 + random.nextInt(99999), 5)));
+        return header;
+    }
+
+    private ISOMsg trailer(long messages, long checksum) throws ISOException {
+        final ISOMsg trailer = message(CONTROL_MTI, FUNCTION_CODE_TRAILER, messages);
+        final ISOMsg pds = pds(301, digits(checksum, 16));
+        pds.set(306, digits(messages, 8));
+        trailer.set(pds);
+        return trailer;
+    }
+
+    private ISOMsg transaction(Random random, long number, long amount) throws ISOException {
+        final int kind = random.nextInt(total);
+        final ISOMsg message;
+
+        if (kind < presentments) {
+            message = message(PRESENTMENT_MTI, FUNCTION_CODE_PRESENTMENT, number);
+            message.set(22, "C10101654140");
+            message.set(38, digits(random.nextInt(1000000), 6));
+            message.set(42, digits(random.nextInt(1000000000), 15));
+            message.set(43, pick(random, MERCHANTS) + " " + random.nextInt(1000) + "\\AV PAULISTA "
+                    + random.nextInt(5000) + "\\" + pick(random, CITIES) + "\\01310100 SP BRA");
+        } else if (kind < presentments + chargebacks) {
+            message = message(CHARGEBACK_MTI, FUNCTION_CODE_CHARGEBACK, number);
+            message.set(25, pick(random, CHARGEBACK_REASONS));
+        } else {
+            message = message(FEE_MTI, FUNCTION_CODE_FEE, number);
+            message.set(25, pick(random, FEE_REASONS));
+            message.set(73, BUSINESS_DATE);
+        }
+
+        message.set(2, luhn("5" + randomDigits(random, 14)));
+        message.set(3, "000000");
+        message.set(4, digits(amount, 12));
+        message.set(5, digits(amount, 12));
+        message.set(12, BUSINESS_DATE + digits(random.nextInt(24), 2) + digits(random.nextInt(60), 2)
+                + digits(random.nextInt(60), 2));
+        message.set(26, pick(random, MCCS));
+        message.set(31, luhn("0" + randomDigits(random, 21)));
+        message.set(33, "002064");
+        message.set(49, CURRENCY);
+        message.set(50, CURRENCY);
+        message.set(63, randomDigits(random, 16));
+
+        final ISOMsg pds = pds(148, CURRENCY_EXPONENT);
+        pds.set(158, "MCCMPL" + randomDigits(random, 7));
+        pds.set(165, "M");
+        message.set(pds);
+
+        return message;
+    }
+
+    private ISOMsg message(String mti, String functionCode, long number) throws ISOException {
+        final ISOMsg message = new ISOMsg();
+        message.setMTI(mti);
+        message.set(24, functionCode);
+        message.set(71, digits(number, 8));
+        return message;
+    }
+
+    private static ISOMsg pds(int tag, String value) throws ISOException {
+        final ISOMsg pds = new ISOMsg(48);
+        pds.set(tag, value);
+        return pds;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private String digits(long value, int length) {
+        long remaining = value;
+
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + (remaining % 10));
+            remaining /= 10;
+        }
+
+        return new String(digits, 0, length);
+    }
+
+    private String randomDigits(Random random, int length) {
+        for (int i = 0; i < length; i++) {
+            digits[i] = (char) ('0' + random.nextInt(10));
+        }
+
+        return new String(digits, 0, length);
+    }
+
+    private static String luhn(String number) {
+        int sum = 0;
+
+        for (int i = number.length() - 1, weight = 2; i >= 0; i--, weight = 3 - weight) {
+            final int product = (number.charAt(i) - '0') * weight;
+            sum += (product > 9) ? product - 9 : product;
+        }
+
+        return number + (char) ('0' + ((10 - (sum % 10)) % 10));
+    }
+
+}
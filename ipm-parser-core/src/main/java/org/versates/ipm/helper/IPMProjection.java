@@ -0,0 +1,138 @@
+package org.versates.ipm.helper;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Projection of the fields of IPM transactions to be exported, like <code>DE2,DE4,DE49,PDS0148</code>. Each field is a
+ * DE, from 0 (the MTI) to 128, or a PDS tag of DE 48, from 0 to 9999, and the fields are exported in the order they
+ * are listed.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMProjection {
+
+    private static final String DE = "DE";
+    private static final String PDS = "PDS";
+    private static final int MAX_DE = 128;
+    private static final int MAX_PDS = 9999;
+    private static final int PDS_DE = 48;
+
+    private final int[] indexes;
+    private final boolean[] pds;
+
+    private IPMProjection(int[] indexes, boolean[] pds) {
+        this.indexes = indexes;
+        this.pds = pds;
+    }
+
+    /**
+     * Parses a comma separated list of fields, like <code>DE2,DE4,DE49,PDS0148</code>. Prefixes are case insensitive
+     * and spaces around the fields are ignored.
+     *
+     * @param fields The list of fields
+     * @return the projection of the fields
+     * @throws IllegalArgumentException If the list is empty or a field is not a valid DE or PDS
+     */
+    public static IPMProjection parse(String fields) {
+        final String[] names = StringUtils.splitPreserveAllTokens(StringUtils.defaultString(fields), ',');
+        final int[] indexes = new int[names.length];
+        final boolean[] pds = new boolean[names.length];
+
+        if (names.length == 0) {
+            throw new IllegalArgumentException("ipmparser.projection.nofields");
+        }
+
+        for (int i = 0; i < names.length; i++) {
+            final String name = names[i].trim().toUpperCase();
+            pds[i] = name.startsWith(PDS);
+            indexes[i] = parseIndex(name, pds[i] ? PDS.length() : DE.length(), pds[i] ? MAX_PDS : MAX_DE);
+
+            if (!pds[i] && !name.startsWith(DE)) {
+                throw new IllegalArgumentException("ipmparser.projection.invalidfield");
+            }
+        }
+
+        return new IPMProjection(indexes, pds);
+    }
+
+    /**
+     * Returns the number of fields of the projection.
+     *
+     * @return the number of fields
+     */
+    public int size() {
+        return indexes.length;
+    }
+
+    /**
+     * Returns the DE index or PDS tag of a field of the projection.
+     *
+     * @param field The position of the field in the projection
+     * @return the DE index or the PDS tag
+     */
+    public int index(int field) {
+        return indexes[field];
+    }
+
+    /**
+     * Checks whether a field of the projection is a PDS.
+     *
+     * @param field The position of the field in the projection
+     * @return TRUE if the field is a PDS, FALSE if it is a DE
+     */
+    public boolean isPds(int field) {
+        return pds[field];
+    }
+
+    /**
+     * Returns the indexes of the DE fields read by the projection, like the fields to be kept by an
+     * {@link org.versates.ipm.parser.IPMFilter}. A PDS is read from DE 48.
+     *
+     * @return the DE indexes, one per field of the projection
+     */
+    public int[] des() {
+        final int[] des = new int[indexes.length];
+
+        for (int i = 0; i < des.length; i++) {
+            des[i] = pds[i] ? PDS_DE : indexes[i];
+        }
+
+        return des;
+    }
+
+    /**
+     * Returns the name of a field of the projection, like <code>DE4</code> or <code>PDS0148</code>.
+     *
+     * @param field The position of the field in the projection
+     * @return the field name
+     */
+    public String name(int field) {
+        return pds[field] ? PDS + StringUtils.leftPad(String.valueOf(indexes[field]), 4, '0') : DE + indexes[field];
+    }
+
+    @Override
+    public String toString() {
+        final String[] names = new String[indexes.length];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = name(i);
+        }
+
+        return StringUtils.join(names, ',');
+    }
+
+    private static int parseIndex(String name, int start, int max) {
+        if (name.length() <= start || !StringUtils.isNumeric(name.substring(start)) || name.length() - start > 4) {
+            throw new IllegalArgumentException("ipmparser.projection.invalidfield");
+        }
+
+        final int index = Integer.parseInt(name.substring(start));
+
+        if (index > max) {
+            throw new IllegalArgumentException("ipmparser.projection.invalidfield");
+        }
+
+        return index;
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMReaderException;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMParserException;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.MessageFormat;
+
+/**
+ * Streaming writer of the XML output of IPM files. Each transaction is written as soon as it is given to the writer,
+ * so the XML document of a file read by an {@link IPMReader} is produced with bounded memory. The document written is
+ * the same one returned by {@link IPMFile#xml()}.
+ *
+ * @author Ramses Vidor
+ */
+public class IPMXmlWriter implements Closeable, Flushable {
+
+    private static final int BUFFER_LENGTH = 64 * 1024;
+    private static final String IDENT = "\t";
+    private static final String LINE_BREAK = "\n";
+
+    private final Writer out;
+    private final StringBuilder element = new StringBuilder();
+
+    /**
+     * Constructs a writer of the XML output into the stream, encoded with the default charset of the platform, which
+     * is the encoding declared by the XML document.
+     *
+     * @param out The stream where the XML output is written
+     */
+    public IPMXmlWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, Charset.defaultCharset()));
+    }
+
+    /**
+     * Constructs a writer of the XML output into the writer.
+     *
+     * @param out The writer where the XML output is written
+     */
+    public IPMXmlWriter(Writer out) {
+        this.out = (out instanceof BufferedWriter) ? out : new BufferedWriter(out, BUFFER_LENGTH);
+    }
+
+    /**
+     * Writes the XML document of an IPM file already in memory.
+     *
+     * @param file The IPM file to be written
+     * @throws IOException If the output can not be written
+     */
+    public void write(IPMFile file) throws IOException {
+        start(file.name(), file.countTransactions());
+        header(file.header());
+
+        for (ISOTransaction transaction : file.transactions()) {
+            write(transaction);
+        }
+
+        footer(file.footer());
+        end();
+    }
+
+    /**
+     * Writes the XML document of an IPM file while it is read, one transaction at a time. The number of transactions
+     * must be known in advance, since it is an attribute of the root element of the document.
+     *
+     * @param name The name of the IPM file
+     * @param messages The number of transactions of the IPM file, not counting header and footer
+     * @param reader The reader of the IPM file
+     * @throws IOException If the output can not be written
+     * @throws IPMParserException If the IPM file can not be read
+     */
+    public void write(String name, int messages, IPMReader reader) throws IOException, IPMParserException {
+        start(name, messages);
+        header(reader.header());
+
+        try {
+            while (reader.hasNext()) {
+                write(reader.next());
+            }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        }
+
+        footer(reader.footer());
+        end();
+    }
+
+    /**
+     * Writes the XML declaration and the opening of the root element of the document.
+     *
+     * @param name The name of the IPM file
+     * @param messages The number of transactions of the IPM file, not counting header and footer
+     * @throws IOException If the output can not be written
+     */
+    public void start(String name, int messages) throws IOException {
+        out.write(MessageFormat.format(XMLConversor.HEADER_TAG, name, messages));
+    }
+
+    /**
+     * Writes the element of the file header.
+     *
+     * @param header The file header message
+     * @throws IOException If the output can not be written
+     */
+    public void header(ISOTransaction header) throws IOException {
+        out.write(info(header, "header"));
+    }
+
+    /**
+     * Writes the element of a transaction.
+     *
+     * @param transaction The ISO 8583 transaction
+     * @throws IOException If the output can not be written
+     */
+    public void write(ISOTransaction transaction) throws IOException {
+        element.setLength(0);
+        element.append(LINE_BREAK);
+        transaction.xml(element, IDENT);
+        out.append(element);
+    }
+
+    /**
+     * Writes the element of the file footer.
+     *
+     * @param footer The file footer message
+     * @throws IOException If the output can not be written
+     */
+    public void footer(ISOTransaction footer) throws IOException {
+        out.write(LINE_BREAK);
+        out.write(info(footer, "footer"));
+    }
+
+    /**
+     * Writes the closing of the root element of the document and flushes the output.
+     *
+     * @throws IOException If the output can not be written
+     */
+    public void end() throws IOException {
+        out.write(XMLConversor.FOOTER_TAG);
+        out.flush();
+    }
+
+    /**
+     * Writes the XML document reporting that the IPM file could not be processed.
+     *
+     * @param name The name of the IPM file
+     * @throws IOException If the output can not be written
+     */
+    public void error(String name) throws IOException {
+        out.write(MessageFormat.format(XMLConversor.HEADER_TAG + XMLConversor.ERROR_ELEMENT
+                + XMLConversor.FOOTER_TAG, name, 0));
+        out.flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private String info(ISOTransaction info, String type) {
+        element.setLength(0);
+        info.xml(element, IDENT);
+        return element.toString().replaceAll("<(/)?message>", "<$1" + type + ">");
+    }
+
+}
@@ -1,14 +1,20 @@
 package org.versates.ipm.helper;
 
 import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMReaderException;
 import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMBuffer;
 import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMInflaterChannel;
 import org.versates.ipm.parser.IPMParserException;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.charset.Charset;
 import java.text.MessageFormat;
 
@@ -52,7 +58,42 @@ public enum XMLConversor {
      * @param layout   The layout ISO 8583 compatible to the file which will be processed.
      */
     public static void dump(String filename, ISOLayout layout) {
-        System.out.println(xml(filename, layout));
+        write(filename, layout, System.out);
+        System.out.println();
+    }
+
+    /**
+     * Write the IPM file output according to layout pre-defined into XML format in the stream. The file is read
+     * twice, first to count its transactions and then to write them one at a time, so the whole file is never kept in
+     * memory.
+     * @param filename The IPM file name - must be informed the complete path.
+     * @param layout   The layout ISO 8583 compatible to the file which will be processed.
+     * @param out      The stream where the XML output is written.
+     */
+    public static void write(String filename, ISOLayout layout, OutputStream out) {
+        final IPMXmlWriter writer = new IPMXmlWriter(out);
+
+        try {
+            write(filename, layout, writer);
+        } catch (Exception ignore) {
+            writeError(writer, filename);
+        }
+    }
+
+    /**
+     * Write the IPM file output according to layout pre-defined into XML format in the stream, like
+     * {@link #write(String, ISOLayout, OutputStream)}, but failing instead of writing an error element. The method keeps
+     * no state, so files may be converted concurrently.
+     * @param filename The IPM file name - must be informed the complete path.
+     * @param layout   The layout ISO 8583 compatible to the file which will be processed.
+     * @param out      The stream where the XML output is written.
+     * @return the number of transactions written
+     * @throws IOException If the file can not be read or the output can not be written
+     * @throws IPMParserException If the IPM file can not be processed
+     */
+    public static int convert(String filename, ISOLayout layout, OutputStream out)
+            throws IOException, IPMParserException {
+        return write(filename, layout, new IPMXmlWriter(out));
     }
 
     /**
@@ -87,26 +128,101 @@ public enum XMLConversor {
     }
 
     private static IPMFile process(String filename, ISOLayout layout) throws IOException, IPMParserException {
-        return new IPMFile(filename, readFile(filename), IPMFileParser.createFileParser(layout));
+        final IPMReader reader = open(filename, IPMFileParser.getFileParser(layout));
+
+        try {
+            return new IPMFile(filename, reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int write(String filename, ISOLayout layout, IPMXmlWriter writer)
+            throws IOException, IPMParserException {
+        final IPMFileParser parser = IPMFileParser.getFileParser(layout);
+        final int messages = count(filename, parser);
+        final IPMReader reader = open(filename, parser);
+
+        try {
+            writer.write(filename, messages, reader);
+        } finally {
+            reader.close();
+        }
+
+        return messages;
     }
 
-    private static byte[] readFile(final String filename) throws IOException {
-        InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(filename);
-        if (in == null) {
-            File file = new File(filename);
+    private static int count(String filename, IPMFileParser parser) throws IOException, IPMParserException {
+        final IPMReader reader = open(filename, parser);
+        int messages = 0;
 
-            if (!file.exists()) {
-                throw new IOException(filename + " could not be found in the path provided.");
+        try {
+            reader.header();
+
+            while (reader.hasNext()) {
+                reader.next();
+                messages++;
+            }
+
+            if (reader.footer() == null) {
+                throw new IPMParserException("ipmparser.file.nofooter");
             }
+        } catch (IPMReaderException e) {
+            throw (IPMParserException) e.getCause();
+        } finally {
+            reader.close();
+        }
+
+        return messages;
+    }
+
+    /**
+     * Opens a reader of the IPM file, looked up first as a resource of the class path and then in the file system,
+     * where the file is mapped into memory. Gzip and zip archives are detected by their first bytes and decompressed
+     * as a stream while the file is read.
+     *
+     * @param filename The IPM file name
+     * @param parser The parser of the file layout
+     * @return the reader of the file
+     * @throws IOException If the file can not be found or opened
+     */
+    static IPMReader open(String filename, IPMFileParser parser) throws IOException {
+        final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(filename);
+
+        if (in != null) {
+            return new IPMReader(in, parser);
+        }
+
+        final File file = new File(filename);
 
-            in = new FileInputStream(file);
+        if (!file.exists()) {
+            throw new IOException(filename + " could not be found in the path provided.");
         }
 
-        final byte[] buffer = new byte[in.available()];
-        in.read(buffer);
-        in.close();
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            final byte[] head = new byte[4];
+            final int length = Math.max(input.read(head), 0);
+
+            if (IPMInflaterChannel.isArchive(head, length)) {
+                input.close();
+                return new IPMReader(new FileInputStream(file), parser);
+            }
 
-        return buffer;
+            input.seek(0);
+            return new IPMReader(IPMBuffer.map(input.getChannel()), input, parser);
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+    }
+
+    private static void writeError(IPMXmlWriter writer, String filename) {
+        try {
+            writer.error(filename);
+        } catch (IOException ignore) {
+        }
     }
 
 }
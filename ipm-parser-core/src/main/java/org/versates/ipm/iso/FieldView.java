@@ -0,0 +1,179 @@
+package org.versates.ipm.iso;
+
+import org.jpos.iso.ISOException;
+
+/**
+ * Reusable cursor over the value of a DE or PDS field. Unlike {@link ISODe}, which is created for each field read, a
+ * view is created once and pointed at one field after another by {@link ISOTransaction#de(int, FieldView)} and
+ * {@link ISOTransaction#pds(int, FieldView)}, and its accessors return primitives, so loops reading many fields do not
+ * allocate anything per field. The contents of a view are only valid until it is pointed at the next field.
+ * <p>
+ * Like a cursor, a view is not thread-safe.
+ *
+ * @author Ramses Vidor
+ */
+public final class FieldView implements CharSequence {
+
+    private int index = -1;
+    private String value = "";
+    private boolean pds;
+
+    /**
+     * Returns the index of the DE or PDS field the view points to.
+     *
+     * @return the field index, or -1 if the view was never pointed at a field
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Checks whether the view points to a PDS field.
+     *
+     * @return TRUE if the field is a PDS, FALSE otherwise
+     */
+    public boolean isPds() {
+        return pds;
+    }
+
+    /**
+     * Checks whether the field contains any value.
+     *
+     * @return TRUE if the field is empty or not present, FALSE if there is any value, even spaces
+     */
+    public boolean isEmpty() {
+        return value.length() == 0;
+    }
+
+    /**
+     * Returns the value of the field converted to long, with the same rules as {@link ISODe#number()}: a value which
+     * is not a number returns 0.
+     *
+     * @return the converted field value
+     */
+    public long asLong() {
+        return parse(value, Long.MIN_VALUE);
+    }
+
+    /**
+     * Returns the value of the field converted to int. A value which is not a number, or does not fit an int, returns 0.
+     *
+     * @return the converted field value
+     */
+    public int asInt() {
+        return (int) parse(value, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Returns the value of the field, in the YYMMDD format, as the number of days since 1970-01-01.
+     *
+     * @return the epoch day of the date
+     * @throws ISOException If the value is not a valid YYMMDD date
+     */
+    public long epochDay() throws ISOException {
+        return ISODateDecoder.epochDay(value);
+    }
+
+    /**
+     * Returns the value of the field, in the YYMMDDhhmmss format, as the number of seconds since 1970-01-01T00:00:00,
+     * taken as UTC.
+     *
+     * @return the epoch second of the date and time
+     * @throws ISOException If the value is not a valid YYMMDDhhmmss date and time
+     */
+    public long epochSecond() throws ISOException {
+        return ISODateDecoder.epochSecond(value);
+    }
+
+    /**
+     * Returns the character of the value of the field at the position.
+     *
+     * @param position The position of the character
+     * @return the character at the position
+     */
+    @Override
+    public char charAt(int position) {
+        return value.charAt(position);
+    }
+
+    /**
+     * Returns the length of the value of the field.
+     *
+     * @return the length of the value, 0 if the field is not present
+     */
+    @Override
+    public int length() {
+        return value.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return value.subSequence(start, end);
+    }
+
+    /**
+     * Returns the value of the field.
+     *
+     * @return the field value
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+
+    /**
+     * Points the view at a field.
+     *
+     * @param index The field index
+     * @param value The field value, or null if the field is not present
+     * @param pds Whether the field is a PDS
+     * @return this view
+     */
+    FieldView set(int index, Object value, boolean pds) {
+        this.index = index;
+        this.value = (value == null) ? "" : value.toString();
+        this.pds = pds;
+        return this;
+    }
+
+    /**
+     * Parses the value as a signed decimal number, accumulating negatively like {@link Long#parseLong(String)} so the
+     * minimum value is accepted.
+     *
+     * @param value The characters to be parsed
+     * @param min The minimum value accepted; the maximum is its opposite minus one
+     * @return the parsed number, or 0 if the value is not a number or does not fit between the limits
+     */
+    static long parse(CharSequence value, long min) {
+        final int length = value.length();
+
+        if (length == 0) {
+            return 0;
+        }
+
+        final char first = value.charAt(0);
+        final boolean negative = first == '-';
+        final long limit = negative ? min : min + 1;
+        final long multiplyLimit = limit / 10;
+        int i = (first == '-' || first == '+') ? 1 : 0;
+
+        if (i == length) {
+            return 0;
+        }
+
+        long result = 0;
+
+        for (; i < length; i++) {
+            final int digit = value.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplyLimit || result * 10 < limit + digit) {
+                return 0;
+            }
+
+            result = (result * 10) - digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+}
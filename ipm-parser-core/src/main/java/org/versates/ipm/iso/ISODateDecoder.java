@@ -0,0 +1,151 @@
+package org.versates.ipm.iso;
+
+import org.jpos.iso.ISOException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Decoders of the fixed date and time formats of the IPM fields: YYMMDD, like DE 73, hhmmss, and YYMMDDhhmmss, like
+ * DE 12. The digits are read straight from the value and checked strictly, with no formatter involved, so the decoders
+ * hold no state and are safe to share between threads. Two-digit years are taken as years of the 2000s.
+ * <p>
+ * A value which does not match the format, or is not a valid date or time, raises the same ISOException as
+ * {@link ISODe#date(String)}.
+ *
+ * @author Ramses Vidor
+ */
+public enum ISODateDecoder {
+    SINGLETON;
+
+    private static final String INVALID_DATE = "ipmparser.transaction.field.invaliddate";
+    private static final int CENTURY = 2000;
+    private static final int DATE_LENGTH = 6;
+    private static final int TIME_LENGTH = 6;
+    private static final int DATE_TIME_LENGTH = DATE_LENGTH + TIME_LENGTH;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final int DAYS_0000_TO_1970 = 719528;
+
+    /**
+     * Decodes a YYMMDD date.
+     *
+     * @param value The date digits
+     * @return the decoded date
+     * @throws ISOException If the value is not a valid YYMMDD date
+     */
+    public static LocalDate localDate(CharSequence value) throws ISOException {
+        return LocalDate.ofEpochDay(epochDay(value));
+    }
+
+    /**
+     * Decodes an hhmmss time.
+     *
+     * @param value The time digits
+     * @return the decoded time
+     * @throws ISOException If the value is not a valid hhmmss time
+     */
+    public static LocalTime localTime(CharSequence value) throws ISOException {
+        return LocalTime.ofSecondOfDay(secondOfDay(value, 0, TIME_LENGTH));
+    }
+
+    /**
+     * Decodes a YYMMDDhhmmss date and time.
+     *
+     * @param value The date and time digits
+     * @return the decoded date and time
+     * @throws ISOException If the value is not a valid YYMMDDhhmmss date and time
+     */
+    public static LocalDateTime localDateTime(CharSequence value) throws ISOException {
+        check(value, DATE_TIME_LENGTH);
+        return LocalDateTime.of(LocalDate.ofEpochDay(epochDay(value, 0)),
+                LocalTime.ofSecondOfDay(secondOfDay(value, DATE_LENGTH, DATE_TIME_LENGTH)));
+    }
+
+    /**
+     * Decodes a YYMMDD date into the number of days since 1970-01-01.
+     *
+     * @param value The date digits
+     * @return the epoch day of the date
+     * @throws ISOException If the value is not a valid YYMMDD date
+     */
+    public static long epochDay(CharSequence value) throws ISOException {
+        check(value, DATE_LENGTH);
+        return epochDay(value, 0);
+    }
+
+    /**
+     * Decodes a YYMMDDhhmmss date and time into the number of seconds since 1970-01-01T00:00:00, taking the date and
+     * time as UTC, since the IPM fields carry no offset.
+     *
+     * @param value The date and time digits
+     * @return the epoch second of the date and time
+     * @throws ISOException If the value is not a valid YYMMDDhhmmss date and time
+     */
+    public static long epochSecond(CharSequence value) throws ISOException {
+        check(value, DATE_TIME_LENGTH);
+        return (epochDay(value, 0) * SECONDS_PER_DAY) + secondOfDay(value, DATE_LENGTH, DATE_TIME_LENGTH);
+    }
+
+    private static long epochDay(CharSequence value, int offset) throws ISOException {
+        final int year = CENTURY + digits(value, offset);
+        final int month = digits(value, offset + 2);
+        final int day = digits(value, offset + 4);
+
+        if (month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)) {
+            throw new ISOException(INVALID_DATE);
+        }
+
+        final int shifted = (month <= 2) ? month + 9 : month - 3;
+        final long years = (month <= 2) ? year - 1 : year;
+
+        return (365 * years) + (years / 4) - (years / 100) + (years / 400) + (((153 * shifted) + 2) / 5) + day
+                + 60 - DAYS_0000_TO_1970 - 1;
+    }
+
+    private static int secondOfDay(CharSequence value, int offset, int length) throws ISOException {
+        check(value, length);
+
+        final int hour = digits(value, offset);
+        final int minute = digits(value, offset + 2);
+        final int second = digits(value, offset + 4);
+
+        if (hour > 23 || minute > 59 || second > 59) {
+            throw new ISOException(INVALID_DATE);
+        }
+
+        return (((hour * 60) + minute) * 60) + second;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    private static int digits(CharSequence value, int offset) throws ISOException {
+        final int tens = value.charAt(offset) - '0';
+        final int units = value.charAt(offset + 1) - '0';
+
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            throw new ISOException(INVALID_DATE);
+        }
+
+        return (tens * 10) + units;
+    }
+
+    private static void check(CharSequence value, int length) throws ISOException {
+        if (value == null || value.length() != length) {
+            throw new ISOException(INVALID_DATE);
+        }
+    }
+
+}
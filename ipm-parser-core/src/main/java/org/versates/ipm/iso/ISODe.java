@@ -9,6 +9,9 @@ import java.math.RoundingMode;
 import java.text.MessageFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Date;
 
 /**
@@ -19,8 +22,10 @@ import java.util.Date;
 public class ISODe implements Serializable {
 
     private static final long serialVersionUID = -6595138637412625384L;
+    private static final String[] INDEXES = new String[10000];
     private final int index;
     private final String value;
+    private final boolean pds;
     private ISOTransaction transaction;
 
     /**
@@ -37,8 +42,7 @@ public class ISODe implements Serializable {
      * @param value The field value of DE or PDS.
      */
     public ISODe(int index, Object value) {
-        this.index = index;
-        this.value = (value != null) ? value.toString() : "";
+        this(index, value, false);
     }
 
     /**
@@ -61,6 +65,18 @@ public class ISODe implements Serializable {
         this.transaction = transaction;
     }
 
+    /**
+     * Build an instance of a PDS field, which belongs to the DE 48 of a message.
+     * @param index The PDS tag.
+     * @param value The PDS value.
+     * @param pds   Whether the field is a PDS.
+     */
+    ISODe(int index, Object value, boolean pds) {
+        this.index = index;
+        this.value = (value != null) ? value.toString() : "";
+        this.pds = pds;
+    }
+
     /**
      * Extracts subfield from the DE or PDS field.
      *
@@ -115,12 +131,17 @@ public class ISODe implements Serializable {
     */
 
     public Long number() {
-        try {
-            return Long.parseLong(value);
-        } catch (NumberFormatException ignore) {
-        }
+        return minorUnits();
+    }
 
-        return 0L;
+   /**
+    * Returns the value of the DE or PDS field as a primitive long, for amounts in the minor units of their currency,
+    * like cents. A value which is not a number returns 0.
+    *
+    * @return the field value as a long
+    */
+    public long minorUnits() {
+        return FieldView.parse(value, Long.MIN_VALUE);
     }
 
    /**
@@ -163,14 +184,13 @@ public class ISODe implements Serializable {
             return BigDecimal.ZERO.setScale(scale, RoundingMode.HALF_EVEN);
         }
 
-        double currency = !empty() ? Double.parseDouble(value) : 0d;
-        StringBuilder decimal = new StringBuilder("1");
+        final long units = minorUnits();
 
-        for (int i = 0; i < scale; i++) {
-            decimal.append("0");
+        if (units != 0 || isZero()) {
+            return BigDecimal.valueOf(units, scale);
         }
 
-        return new BigDecimal((currency / Integer.parseInt(decimal.toString()))).setScale(scale, RoundingMode.HALF_EVEN);
+        return new BigDecimal(value.trim()).movePointLeft(scale).setScale(scale, RoundingMode.HALF_EVEN);
     }
 
     /**
@@ -194,6 +214,38 @@ public class ISODe implements Serializable {
         }
     }
 
+    /**
+     * Returns the value of the DE or PDS field converted to a date, for fields in the YYMMDD format, like DE 73. The
+     * value is decoded by {@link ISODateDecoder}, with no formatter created per call.
+     *
+     * @return the value of the field converted to LocalDate, or null if the field is empty
+     * @throws ISOException If the field value is not a valid YYMMDD date, an ISOException is thrown
+     */
+    public LocalDate localDate() throws ISOException {
+        return !empty() ? ISODateDecoder.localDate(value) : null;
+    }
+
+    /**
+     * Returns the value of the DE or PDS field converted to a time, for fields in the hhmmss format.
+     *
+     * @return the value of the field converted to LocalTime, or null if the field is empty
+     * @throws ISOException If the field value is not a valid hhmmss time, an ISOException is thrown
+     */
+    public LocalTime localTime() throws ISOException {
+        return !empty() ? ISODateDecoder.localTime(value) : null;
+    }
+
+    /**
+     * Returns the value of the DE or PDS field converted to a date and time, for fields in the YYMMDDhhmmss format,
+     * like DE 12.
+     *
+     * @return the value of the field converted to LocalDateTime, or null if the field is empty
+     * @throws ISOException If the field value is not a valid YYMMDDhhmmss date and time, an ISOException is thrown
+     */
+    public LocalDateTime localDateTime() throws ISOException {
+        return !empty() ? ISODateDecoder.localDateTime(value) : null;
+    }
+
    /**
     * Returns the length of the field value.
     *
@@ -219,11 +271,31 @@ public class ISODe implements Serializable {
    * @return XML tag representing the field
    */
     public String xml(String ident) {
+        StringBuilder output = new StringBuilder();
+        xml(output, ident);
+        return output.toString();
+    }
+
+  /**
+   * Appends an XML tag that represents the field information and its contents to the output.
+   *
+   * @param output The output where the XML tag is appended
+   * @param ident XML tag indentation pattern
+   */
+    public void xml(StringBuilder output, String ident) {
         if (StringUtils.isEmpty(ident) || "\t\t".equals(ident)) {
             ident = "\t";
         }
 
-        return MessageFormat.format(getXmlTag(), ident, index, value, belongsToPds() ? "pds" : "de");
+        output.append(ident);
+
+        if (index == 0) {
+            output.append("<mti>").append(value).append("</mti>");
+        } else {
+            final String tag = belongsToPds() ? "pds" : "de";
+            output.append('<').append(tag).append(" id=\"").append(formatIndex(index)).append("\">").append(value)
+                    .append("</").append(tag).append('>');
+        }
     }
 
   /**
@@ -232,7 +304,7 @@ public class ISODe implements Serializable {
    * @return TRUE if the field belongs to a PDS field, otherwise returns FALSE
    */
     public boolean belongsToPds() {
-        return transaction != null && transaction.isPds();
+        return pds || (transaction != null && transaction.isPds());
     }
 
     /**
@@ -245,8 +317,29 @@ public class ISODe implements Serializable {
         return value;
     }
 
-    private String getXmlTag() {
-        return (index == 0) ? "{0}<mti>{2}</mti>" : "{0}<{3} id=\"{1}\">{2}</{3}>";
+    private boolean isZero() {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) != '0') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String formatIndex(int index) {
+        if (index < 0 || index >= INDEXES.length) {
+            return MessageFormat.format("{0}", index);
+        }
+
+        String formatted = INDEXES[index];
+
+        if (formatted == null) {
+            formatted = MessageFormat.format("{0}", index);
+            INDEXES[index] = formatted;
+        }
+
+        return formatted;
     }
 
 }
@@ -0,0 +1,269 @@
+package org.versates.ipm.iso;
+
+import org.versates.ipm.iso.packager.ISOLayoutPackager;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * ISO 8583 message whose fields are decoded only when they are first accessed. Unpacking the message only frames it:
+ * the bitmap is read and the position of each present field is recorded, and the bytes of the message are kept until
+ * every field is decoded. Operations over the whole message, like packing, dumping or cloning it, decode all the
+ * pending fields first.
+ * <p>
+ * A field which can not be decoded when it is accessed marks the message as corrupted. Like {@link ISOMsg}, this class
+ * is not thread-safe.
+ *
+ * @author Ramses Vidor
+ */
+public class ISOLazyMessage extends ISOMessage {
+
+    private static final long serialVersionUID = -7310862457813026194L;
+
+    private byte[] bytes;
+    private int[] positions;
+
+    /**
+     * Constructs an ISO 8583 message instance.
+     */
+    public ISOLazyMessage() {
+        super();
+    }
+
+    /**
+     * Frames the message found at the offset of a shared buffer, keeping a copy of its bytes so fields can be decoded
+     * later. When the packager in use is not an {@link ISOLayoutPackager}, the message is unpacked at once.
+     *
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the message in the buffer
+     * @param limit The position after the last valid byte of the buffer
+     * @return the number of bytes consumed by the message
+     * @throws ISOException If the message can not be framed
+     */
+    @Override
+    public int unpack(byte[] b, int offset, int limit) throws ISOException {
+        if (!(packager instanceof ISOLayoutPackager)) {
+            return super.unpack(b, offset, limit);
+        }
+
+        final int[] fields = new int[((ISOLayoutPackager) packager).getFieldCount()];
+        final int consumed = ((ISOLayoutPackager) packager).index(this, b, offset, limit, fields);
+
+        bytes = new byte[consumed];
+        System.arraycopy(b, offset, bytes, 0, consumed);
+
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = (fields[i] < 0) ? -1 : fields[i] - offset;
+        }
+
+        positions = fields;
+
+        return consumed;
+    }
+
+    @Override
+    public boolean hasField(int index) {
+        return isPending(index) || super.hasField(index);
+    }
+
+    @Override
+    public ISOComponent getComponent(int index) {
+        try {
+            decode(index);
+        } catch (ISOException e) {
+            setError(e);
+        }
+
+        return super.getComponent(index);
+    }
+
+    @Override
+    public Object getValue(int index) throws ISOException {
+        decode(index);
+        return super.getValue(index);
+    }
+
+    @Override
+    public int getMaxField() {
+        int max = super.getMaxField();
+
+        if (positions != null) {
+            for (int i = positions.length - 1; i > max; i--) {
+                if (positions[i] >= 0) {
+                    return i;
+                }
+            }
+        }
+
+        return max;
+    }
+
+    @Override
+    public void set(ISOComponent c) throws ISOException {
+        final Object key = c.getKey();
+
+        if (key instanceof Integer && isPending((Integer) key)) {
+            positions[(Integer) key] = -1;
+        }
+
+        super.set(c);
+    }
+
+    @Override
+    public void unset(int index) {
+        if (isPending(index)) {
+            positions[index] = -1;
+        }
+
+        super.unset(index);
+    }
+
+    @Override
+    public Map getChildren() {
+        decodeAll();
+        return super.getChildren();
+    }
+
+    @Override
+    public byte[] pack() throws ISOException {
+        decodeAll();
+        return super.pack();
+    }
+
+    @Override
+    public void dump(PrintStream p, String indent) {
+        decodeAll();
+        super.dump(p, indent);
+    }
+
+    @Override
+    public Object clone() {
+        decodeAll();
+        return super.clone();
+    }
+
+    @Override
+    public Object clone(int[] fields) {
+        decodeAll();
+        return super.clone(fields);
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        decodeAll();
+        super.writeExternal(out);
+    }
+
+    /**
+     * Checks whether a fixed-length field holds one of the values, comparing the raw bytes of the field with the values
+     * encoded in the charset of the layout, so the field is not decoded. Fields already decoded, or messages unpacked
+     * at once, are compared by the value of the field.
+     *
+     * @param index The field number
+     * @param values The values, encoded in the charset of the layout
+     * @param charset The charset of the layout
+     * @return TRUE if the field holds one of the values, FALSE otherwise or if the field is absent
+     * @throws ISOException If the value of the field can not be read
+     */
+    public boolean matches(int index, byte[][] values, Charset charset) throws ISOException {
+        if (isPending(index)) {
+            return contains(values, bytes, positions[index], bytes.length, false);
+        }
+
+        final String value = super.hasField(index) ? getString(index) : null;
+
+        if (value == null) {
+            return false;
+        }
+
+        final byte[] encoded = value.getBytes(charset);
+        return contains(values, encoded, 0, encoded.length, true);
+    }
+
+    /**
+     * Keeps only the fields of the set which were not decoded yet: the others are dropped as if they were absent from
+     * the message, and are never decoded.
+     *
+     * @param fields The field numbers to be kept
+     */
+    public void retain(BitSet fields) {
+        if (positions == null) {
+            return;
+        }
+
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i] >= 0 && !fields.get(i)) {
+                positions[i] = -1;
+            }
+        }
+    }
+
+    /**
+     * Checks whether the field was already decoded, or was never present in the message.
+     *
+     * @param index The field number
+     * @return TRUE if there is nothing left to decode for the field, FALSE otherwise
+     */
+    boolean isDecoded(int index) {
+        return !isPending(index);
+    }
+
+    private boolean isPending(int index) {
+        return positions != null && index >= 0 && index < positions.length && positions[index] >= 0;
+    }
+
+    private static boolean contains(byte[][] values, byte[] b, int position, int limit, boolean exact) {
+        for (byte[] value : values) {
+            if (position + value.length > limit || (exact && position + value.length != limit)) {
+                continue;
+            }
+
+            int i = 0;
+
+            while (i < value.length && b[position + i] == value[i]) {
+                i++;
+            }
+
+            if (i == value.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void decode(int index) throws ISOException {
+        if (!isPending(index)) {
+            return;
+        }
+
+        final int position = positions[index];
+        positions[index] = -1;
+        ((ISOLayoutPackager) packager).decode(this, index, bytes, position);
+    }
+
+    private void decodeAll() {
+        if (positions == null) {
+            return;
+        }
+
+        for (int i = 0; i < positions.length; i++) {
+            try {
+                decode(i);
+            } catch (ISOException e) {
+                setError(e);
+            }
+        }
+
+        positions = null;
+        bytes = null;
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.versates.ipm.iso;
 
+import org.versates.ipm.iso.packager.ISOLayoutPackager;
 import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOMsg;
 
@@ -36,6 +37,28 @@ public class ISOMessage extends ISOMsg {
         }
     }
 
+    /**
+     * Unpacks the message found at the offset of a shared buffer. When the packager in use is an
+     * {@link ISOLayoutPackager}, the message is read in place; otherwise the bytes between the offset and the limit are
+     * copied before unpacking.
+     *
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the message in the buffer
+     * @param limit The position after the last valid byte of the buffer
+     * @return the number of bytes consumed by the message
+     * @throws ISOException If the message can not be unpacked
+     */
+    public int unpack(byte[] b, int offset, int limit) throws ISOException {
+        if (packager instanceof ISOLayoutPackager) {
+            return ((ISOLayoutPackager) packager).unpack(this, b, offset, limit);
+        }
+
+        final byte[] content = new byte[limit - offset];
+        System.arraycopy(b, offset, content, 0, content.length);
+
+        return unpack(content);
+    }
+
     /**
      * In the case of corrupted messages, returns the Exception that contains the error encountered while processing the ISO message
      * 8583. Returns null if the message is not corrupted.
@@ -0,0 +1,136 @@
+package org.versates.ipm.iso;
+
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Index of the PDS subfields of DE 48 by tag. The tags and values are kept in arrays, in ascending tag order, and an
+ * open addressing table of primitive ints maps each tag to its position, so a PDS is found without boxing the tag and
+ * without walking a tree. The field of each PDS is created on its first access and reused afterwards.
+ * <p>
+ * The index is built from the DE 48 subfields the packager walked when the message was unpacked, since the message
+ * does not keep the bytes of DE 48. Their values are the strings already decoded by the walker and are referenced,
+ * not copied.
+ *
+ * @author Ramses Vidor
+ */
+final class ISOPdsIndex {
+
+    private static final int GOLDEN_RATIO = 0x9E3779B9;
+
+    private final int[] tags;
+    private final Object[] values;
+    private final ISODe[] fields;
+    private final int[] slots;
+    private final int mask;
+
+    /**
+     * Indexes the subfields of the DE 48 message.
+     *
+     * @param pds The DE 48 message, with a field for each PDS
+     * @throws ISOException If the value of a PDS can not be read
+     */
+    ISOPdsIndex(ISOMsg pds) throws ISOException {
+        @SuppressWarnings("unchecked")
+        final Map<Integer, ISOComponent> children = pds.getChildren();
+        final int[] keys = new int[children.size()];
+        final Object[] contents = new Object[children.size()];
+        int size = 0;
+
+        for (Map.Entry<Integer, ISOComponent> child : children.entrySet()) {
+            if (child.getKey() >= 0) {
+                keys[size] = child.getKey();
+                contents[size] = child.getValue().getValue();
+                size++;
+            }
+        }
+
+        tags = (size == keys.length) ? keys : Arrays.copyOf(keys, size);
+        values = contents;
+        fields = new ISODe[size];
+
+        int capacity = 8;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+
+        slots = new int[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < size; i++) {
+            int slot = hash(tags[i]);
+
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            slots[slot] = i + 1;
+        }
+    }
+
+    /**
+     * Returns the number of PDS indexed.
+     *
+     * @return the number of PDS
+     */
+    int size() {
+        return tags.length;
+    }
+
+    /**
+     * Returns the position of the PDS with the tag.
+     *
+     * @param tag The PDS tag
+     * @return the position of the PDS, or -1 if the PDS is not present
+     */
+    int find(int tag) {
+        int slot = hash(tag);
+
+        for (int position = slots[slot]; position != 0; position = slots[slot]) {
+            if (tags[position - 1] == tag) {
+                return position - 1;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the value of the PDS at the position.
+     *
+     * @param position The position of the PDS, between 0 and {@link #size()}
+     * @return the PDS value
+     */
+    Object value(int position) {
+        return values[position];
+    }
+
+    /**
+     * Returns the field of the PDS at the position.
+     *
+     * @param position The position of the PDS, between 0 and {@link #size()}
+     * @return the PDS field
+     */
+    ISODe field(int position) {
+        ISODe field = fields[position];
+
+        if (field == null) {
+            field = new ISODe(tags[position], values[position], true);
+            fields[position] = field;
+        }
+
+        return field;
+    }
+
+    private int hash(int tag) {
+        final int h = tag * GOLDEN_RATIO;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+}
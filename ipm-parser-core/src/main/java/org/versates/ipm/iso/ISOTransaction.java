@@ -7,6 +7,7 @@ import org.jpos.iso.ISOMsg;
 
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.math.BigDecimal;
 
 /**
  * Class representing the ISO 8583 message as a financial transaction.
@@ -17,16 +18,21 @@ public class ISOTransaction implements Serializable {
 
     private static final long serialVersionUID = -1521612733518231608L;
     private static final int PDS_INDEX = 48;
+    private static final int CURRENCY_EXPONENTS_PDS = 148;
+    private static final int CURRENCY_EXPONENT_LENGTH = 4;
+    private static final int CURRENCY_CODE_LENGTH = 3;
+    private static final int AMOUNT_TO_CURRENCY_CODE = 45;
 
     private final ISOMessage message;
-    private ISOTransaction pds;
+    private transient ISOPdsIndex pds;
 
     /**
-     * Constructs a financial transaction message instance.
+     * Constructs a financial transaction message instance. The PDS of DE 48 are only indexed when they are first
+     * needed.
      *
      * @param message The ISO 8583 message that should be represented as a financial transaction
      * @throws IPMParserException If the ISO 8583 message processing criteria are not obeyed, an IPMParserException is
-       launched
+       launched
      */
     public ISOTransaction(ISOMessage message) throws IPMParserException {
         if (message == null) {
@@ -34,14 +40,6 @@ public class ISOTransaction implements Serializable {
         }
 
         this.message = message;
-
-        try {
-            if (message.hasField(PDS_INDEX)) {
-                pds = new ISOTransaction(new ISOMessage((ISOMsg) message.getValue(PDS_INDEX)));
-            }
-        } catch (ISOException e) {
-            throw new IPMParserException("ipmparser.transaction.noprivatedata");
-        }
     }
 
     /**
@@ -65,13 +63,25 @@ public class ISOTransaction implements Serializable {
         return message.hasField(index);
     }
 
+    /**
+     * Checks if the PDS is present in the DE 48 of the message.
+     *
+     * @param index The tag of the PDS
+     * @return TRUE if the PDS is present, FALSE otherwise
+     * @throws ISOException If the DE 48 can not be extracted, an ISOException is thrown
+     */
+    public boolean hasPds(int index) throws ISOException {
+        final ISOPdsIndex privateData = privateData();
+        return privateData != null && privateData.find(index) >= 0;
+    }
+
     /**
      * Checks whether the field is a PDS.
      *
      * @return TRUE if it is a PDS, FALSE otherwise
      */
     public boolean isPds() {
-        return pds == null && !isCorrupted();
+        return !message.hasField(PDS_INDEX) && !isCorrupted();
     }
 
     /**
@@ -105,7 +115,10 @@ public class ISOTransaction implements Serializable {
     }
 
     /**
-     * Returns the PDS field with the given index.
+     * Returns the PDS field with the given index. The PDS are looked up by tag in an index built from DE 48 on first
+     * use, and the same field instance is returned by later calls. A PDS that is not present is returned as a new
+     * empty field on every call; loops over many transactions should check {@link #hasPds(int)} first, or read the
+     * value through {@link #pds(int, FieldView)}, which never allocates.
      *
      * @param index The field ID index
      * @return The PDS field indicated by the index
@@ -113,7 +126,100 @@ public class ISOTransaction implements Serializable {
      * ISOException is thrown
      */
     public ISODe pds(int index) throws ISOException {
-        return (pds != null) ? pds.de(index) : new ISODe(index);
+        final ISOPdsIndex privateData = privateData();
+
+        if (privateData == null) {
+            return new ISODe(index);
+        }
+
+        final int position = privateData.find(index);
+        return (position >= 0) ? privateData.field(position) : new ISODe(index, "", true);
+    }
+
+    /**
+     * Points the view at the DE field with the given index, without creating a field instance.
+     *
+     * @param index The field ID index
+     * @param view The view to be reused for the field
+     * @return the view, pointing to the DE field; empty if the field is not present
+     * @throws ISOException If the value of the DE field is not valid or the field information can not be extracted, a
+     * ISOException is thrown
+     */
+    public FieldView de(int index, FieldView view) throws ISOException {
+        return view.set(index, hasDe(index) ? message.getValue(index) : null, false);
+    }
+
+    /**
+     * Points the view at the PDS field with the given index, without creating a field instance.
+     *
+     * @param index The field ID index
+     * @param view The view to be reused for the field
+     * @return the view, pointing to the PDS field; empty if the field is not present
+     * @throws ISOException If the DE 48 can not be extracted, an ISOException is thrown
+     */
+    public FieldView pds(int index, FieldView view) throws ISOException {
+        final ISOPdsIndex privateData = privateData();
+        final int position = (privateData != null) ? privateData.find(index) : -1;
+
+        return view.set(index, (position >= 0) ? privateData.value(position) : null, privateData != null);
+    }
+
+    /**
+     * Returns the amount of the DE field in the minor units of its currency, like cents, without creating a field
+     * instance.
+     *
+     * @param index The index of the amount DE field, like DE 4, DE 5 or DE 6
+     * @return the amount in minor units, or 0 if the field is not present or is not a number
+     * @throws ISOException If the field information can not be extracted, a ISOException is thrown
+     */
+    public long minorUnits(int index) throws ISOException {
+        return hasDe(index) ? FieldView.parse(String.valueOf(message.getValue(index)), Long.MIN_VALUE) : 0L;
+    }
+
+    /**
+     * Returns the exponent of the currency of an amount DE field: the currency code of DE 4, DE 5 and DE 6 is found in
+     * DE 49, DE 50 and DE 51, and its exponent in PDS 0148, which lists the exponent of each currency of the
+     * message.
+     *
+     * @param index The index of the amount DE field, DE 4, DE 5 or DE 6
+     * @return the currency exponent, or -1 if it is not informed in the message
+     * @throws ISOException If the field information can not be extracted, a ISOException is thrown
+     */
+    public int exponent(int index) throws ISOException {
+        final int currency = index + AMOUNT_TO_CURRENCY_CODE;
+        final ISOPdsIndex privateData = (index >= 4 && index <= 6 && hasDe(currency)) ? privateData() : null;
+        final int position = (privateData != null) ? privateData.find(CURRENCY_EXPONENTS_PDS) : -1;
+
+        if (position < 0) {
+            return -1;
+        }
+
+        final String code = String.valueOf(message.getValue(currency));
+        final String exponents = String.valueOf(privateData.value(position));
+
+        if (code.length() != CURRENCY_CODE_LENGTH) {
+            return -1;
+        }
+
+        for (int i = 0; i + CURRENCY_EXPONENT_LENGTH <= exponents.length(); i += CURRENCY_EXPONENT_LENGTH) {
+            if (exponents.regionMatches(i, code, 0, CURRENCY_CODE_LENGTH)) {
+                final int exponent = exponents.charAt(i + CURRENCY_CODE_LENGTH) - '0';
+                return (exponent >= 0 && exponent <= 9) ? exponent : -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the exact amount of an amount DE field, scaled by the exponent of its currency.
+     *
+     * @param index The index of the amount DE field, DE 4, DE 5 or DE 6
+     * @return the amount, with no decimal places if the currency exponent is not informed
+     * @throws ISOException If the field information can not be extracted, a ISOException is thrown
+     */
+    public BigDecimal amount(int index) throws ISOException {
+        return BigDecimal.valueOf(minorUnits(index), Math.max(0, exponent(index)));
     }
 
     /**
@@ -141,33 +247,65 @@ public class ISOTransaction implements Serializable {
      * @return conversion of message content ISO 8583 to XML
      */
     public String xml(String ident) {
+        StringBuilder output = new StringBuilder();
+        xml(output, ident);
+        return output.toString();
+    }
+
+    /**
+     * Appends the contents of the ISO 8583 message converted to XML to the output.
+     *
+     * @param output The output where the XML is appended
+     * @param ident XML tag indentation pattern
+     */
+    public void xml(StringBuilder output, String ident) {
         if (StringUtils.isEmpty(ident)) {
             ident = "\t";
         }
 
-        StringBuilder output = new StringBuilder(ident);
+        output.append(ident);
         output.append((isPds() && !isCorrupted() ? "<de id=\"" + PDS_INDEX + "\">" : "<message>"));
 
         for (int i = 0; i <= message.getMaxField(); i++) {
             try {
-                output.append(generateXmlOutput(ident, i));
+                generateXmlOutput(output, ident, i);
             } catch (ISOException ignore) {
             }
         }
 
-        return output.append("\n").append(ident).append((isPds() ? "</de>" : "</message>")).toString();
+        output.append("\n").append(ident).append((isPds() ? "</de>" : "</message>"));
     }
 
-    private String generateXmlOutput(String ident, int i) throws ISOException {
-        return (i == PDS_INDEX && pds != null) ? convertPdsToXml(ident) : convertDeToXml(ident, i);
+    private void generateXmlOutput(StringBuilder output, String ident, int i) throws ISOException {
+        final ISOPdsIndex privateData = (i == PDS_INDEX) ? privateData() : null;
+
+        if (privateData != null) {
+            output.append("\n");
+            generateXmlOutput(output, ident + ident, privateData);
+        } else if (hasDe(i)) {
+            final ISODe de = de(i);
+            output.append("\n").append(ident);
+            de.xml(output, ident);
+        }
     }
 
-    private String convertDeToXml(String ident, int i) throws ISOException {
-        return hasDe(i) ? "\n" + ident + de(i).xml(ident) : "";
+    private void generateXmlOutput(StringBuilder output, String ident, ISOPdsIndex privateData) {
+        output.append(ident).append("<de id=\"" + PDS_INDEX + "\">");
+
+        for (int i = 0; i < privateData.size(); i++) {
+            output.append("\n").append(ident);
+            privateData.field(i).xml(output, ident);
+        }
+
+        output.append("\n").append(ident).append("</de>");
     }
 
-    private String convertPdsToXml(String ident) {
-        return "\n" + pds.xml(ident + ident);
+    private ISOPdsIndex privateData() throws ISOException {
+        if (pds == null && message.hasField(PDS_INDEX)) {
+            pds = new ISOPdsIndex((ISOMsg) message.getValue(PDS_INDEX));
+        }
+
+        return pds;
     }
 
 }
@@ -0,0 +1,61 @@
+package org.versates.ipm.iso.packager;
+
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOMsg;
+
+/**
+ * Decoder of one field of an ISO 8583 layout. This base decoder unpacks the field through its jPOS field packager;
+ * the decoders built by the {@link ISOLayoutCompiler} override it with a decoding specialized for the field type and
+ * fall back to it whenever the field bytes do not look valid.
+ *
+ * @author Ramses Vidor
+ */
+class ISOFieldDecoder {
+
+    protected final int index;
+    protected final ISOFieldPackager packager;
+
+    /**
+     * Constructs a decoder of the field through its jPOS field packager.
+     *
+     * @param index The field number
+     * @param packager The jPOS field packager of the field
+     */
+    ISOFieldDecoder(int index, ISOFieldPackager packager) {
+        this.index = index;
+        this.packager = packager;
+    }
+
+    /**
+     * Decodes the field found at the offset of the buffer, setting it into the message.
+     *
+     * @param m The message to be filled with the field
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the field
+     * @return the number of bytes consumed by the field
+     * @throws ISOException If the field can not be unpacked
+     */
+    int decode(ISOComponent m, byte[] b, int offset) throws ISOException {
+        final ISOComponent component = packager.createComponent(index);
+        final int consumed = packager.unpack(component, b, offset);
+        m.set(component);
+
+        return consumed;
+    }
+
+    /**
+     * Measures the field found at the offset of the buffer without keeping its value. This base decoder has to
+     * unpack the field to know its length.
+     *
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the field
+     * @return the number of bytes of the field
+     * @throws ISOException If the field can not be unpacked
+     */
+    int skip(byte[] b, int offset) throws ISOException {
+        return decode(new ISOMsg(), b, offset);
+    }
+
+}
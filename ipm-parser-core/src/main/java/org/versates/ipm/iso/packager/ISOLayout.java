@@ -24,6 +24,8 @@ public enum ISOLayout {
      */
     MASTERCARD_EBCDIC(Charset.forName("IBM1047"), "mastercard-ebcdic.xml");
 
+    private static final String CONFIGURATION_DIRECTORY = ISOLayout.class.getPackage().getName().replace('.', '/') + "/";
+
     private final Charset charset;
     private final String configuration;
 
@@ -47,7 +49,7 @@ public enum ISOLayout {
      * @return the path of the configuration file
      */
     public String getConfigurationPath() {
-        return "com/totvscard/ipm/iso/packager/" + configuration;
+        return CONFIGURATION_DIRECTORY + configuration;
     }
 
 }
@@ -0,0 +1,273 @@
+package org.versates.ipm.iso.packager;
+
+import org.jpos.iso.IFA_LLCHAR;
+import org.jpos.iso.IFA_LLLBINARY;
+import org.jpos.iso.IFA_LLLCHAR;
+import org.jpos.iso.IFA_LLLNUM;
+import org.jpos.iso.IFA_LLNUM;
+import org.jpos.iso.IFA_NUMERIC;
+import org.jpos.iso.IFE_LLCHAR;
+import org.jpos.iso.IFE_LLLBINARY;
+import org.jpos.iso.IFE_LLLCHAR;
+import org.jpos.iso.IFE_LLNUM;
+import org.jpos.iso.IFE_NUMERIC;
+import org.jpos.iso.IF_CHAR;
+import org.jpos.iso.IF_ECHAR;
+import org.jpos.iso.ISOBinaryField;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOField;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOMsgFieldPackager;
+import org.jpos.iso.ISOPackager;
+import org.jpos.iso.ISOUtil;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles the field packagers of an ISO 8583 layout into field decoders specialized for each field. The field types
+ * used by the IPM layouts are decoded straight from the bytes of the message: the length prefix is read digit by digit
+ * and the value is translated through a table, without the prefixer, interpreter and intermediate arrays of the
+ * generic jPOS packagers, and fields can be measured without being decoded at all. Field types without a specialized
+ * decoder, and any field whose bytes do not look valid, are unpacked by the jPOS field packager itself, so the result
+ * and the errors are always the same as jPOS.
+ *
+ * @author Ramses Vidor
+ */
+final class ISOLayoutCompiler {
+
+    private static final int LL = 2;
+    private static final int LLL = 3;
+    private static final char[] EBCDIC = new char[256];
+    private static final char[] ASCII = new char[256];
+    private static final Map<Class<?>, Format> FORMATS = new HashMap<Class<?>, Format>();
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            EBCDIC[i] = (char) (ISOUtil.EBCDIC2ASCII[i] & 0xFF);
+            ASCII[i] = (char) i;
+        }
+
+        FORMATS.put(IFE_NUMERIC.class, new Format(EBCDIC, 0, true));
+        FORMATS.put(IF_ECHAR.class, new Format(EBCDIC, 0, true));
+        FORMATS.put(IFE_LLNUM.class, new Format(EBCDIC, LL, true));
+        FORMATS.put(IFE_LLCHAR.class, new Format(EBCDIC, LL, true));
+        FORMATS.put(IFE_LLLCHAR.class, new Format(EBCDIC, LLL, true));
+        FORMATS.put(IFE_LLLBINARY.class, new Format(null, LLL, true));
+        FORMATS.put(IFA_NUMERIC.class, new Format(ASCII, 0, false));
+        FORMATS.put(IF_CHAR.class, new Format(ASCII, 0, false));
+        FORMATS.put(IFA_LLNUM.class, new Format(ASCII, LL, false));
+        FORMATS.put(IFA_LLCHAR.class, new Format(ASCII, LL, false));
+        FORMATS.put(IFA_LLLNUM.class, new Format(ASCII, LLL, false));
+        FORMATS.put(IFA_LLLCHAR.class, new Format(ASCII, LLL, false));
+        FORMATS.put(IFA_LLLBINARY.class, new Format(null, LLL, false));
+    }
+
+    private ISOLayoutCompiler() {
+    }
+
+    /**
+     * Compiles the field packagers of a layout into field decoders, keeping their indexes.
+     *
+     * @param fields The field packagers of the layout, by field number
+     * @return the field decoders of the layout, by field number; null where there is no field packager
+     */
+    static ISOFieldDecoder[] compile(ISOFieldPackager[] fields) {
+        final ISOFieldDecoder[] decoders = new ISOFieldDecoder[fields.length];
+        final boolean latin = ISOUtil.CHARSET.equals(Charset.forName("ISO-8859-1"));
+
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                decoders[i] = latin ? compile(i, fields[i]) : new ISOFieldDecoder(i, fields[i]);
+            }
+        }
+
+        return decoders;
+    }
+
+    private static ISOFieldDecoder compile(int index, ISOFieldPackager field) {
+        if (field instanceof ISOMsgFieldPackager) {
+            final ISOMsgFieldPackager message = (ISOMsgFieldPackager) field;
+            final Format format = FORMATS.get(message.getISOFieldPackager().getClass());
+
+            if (format != null && format.table == null) {
+                return new MessageDecoder(index, field, format, message.getISOFieldPackager().getLength(),
+                        message.getISOMsgPackager());
+            }
+        }
+
+        final Format format = FORMATS.get(field.getClass());
+
+        if (format == null) {
+            return new ISOFieldDecoder(index, field);
+        }
+
+        return (format.table == null) ? new BinaryDecoder(index, field, format, field.getLength())
+                : new StringDecoder(index, field, format, field.getLength());
+    }
+
+    /**
+     * Encoding of a field type: the table which translates its bytes, the number of digits of its length prefix and
+     * whether the prefix is EBCDIC.
+     */
+    private static final class Format {
+
+        private final char[] table;
+        private final int prefix;
+        private final boolean ebcdic;
+
+        private Format(char[] table, int prefix, boolean ebcdic) {
+            this.table = table;
+            this.prefix = prefix;
+            this.ebcdic = ebcdic;
+        }
+
+    }
+
+    /**
+     * Decoder of fields with a length prefix, or with fixed length, shared by the specialized decoders.
+     */
+    private abstract static class PrefixedDecoder extends ISOFieldDecoder {
+
+        protected final Format format;
+        protected final int length;
+
+        PrefixedDecoder(int index, ISOFieldPackager packager, Format format, int length) {
+            super(index, packager);
+            this.format = format;
+            this.length = length;
+        }
+
+        /**
+         * Reads the length of the value of the field, checking that the whole field is available.
+         *
+         * @return the length of the value, or -1 if the field is not valid
+         */
+        protected int valueLength(byte[] b, int offset) {
+            if (format.prefix == 0) {
+                return (offset + length <= b.length) ? length : -1;
+            } else if (offset + format.prefix > b.length) {
+                return -1;
+            }
+
+            int value = 0;
+
+            for (int i = 0; i < format.prefix; i++) {
+                value = format.ebcdic ? (value * 10) + (b[offset + i] & 0x0F) : (value * 10) + b[offset + i] - '0';
+            }
+
+            final boolean valid = value >= 0 && (length <= 0 || value <= length)
+                    && offset + format.prefix + value <= b.length;
+
+            return valid ? value : -1;
+        }
+
+        @Override
+        int skip(byte[] b, int offset) throws ISOException {
+            final int value = valueLength(b, offset);
+            return (value < 0) ? super.skip(b, offset) : format.prefix + value;
+        }
+
+    }
+
+    /**
+     * Decoder of character and numeric fields.
+     */
+    private static final class StringDecoder extends PrefixedDecoder {
+
+        StringDecoder(int index, ISOFieldPackager packager, Format format, int length) {
+            super(index, packager, format, length);
+        }
+
+        @Override
+        int decode(ISOComponent m, byte[] b, int offset) throws ISOException {
+            final int value = valueLength(b, offset);
+
+            if (value < 0) {
+                return super.decode(m, b, offset);
+            }
+
+            final char[] table = format.table;
+            final char[] chars = new char[value];
+            final int start = offset + format.prefix;
+
+            for (int i = 0; i < value; i++) {
+                chars[i] = table[b[start + i] & 0xFF];
+            }
+
+            m.set(new ISOField(index, new String(chars)));
+
+            return format.prefix + value;
+        }
+
+    }
+
+    /**
+     * Decoder of binary fields.
+     */
+    private static final class BinaryDecoder extends PrefixedDecoder {
+
+        BinaryDecoder(int index, ISOFieldPackager packager, Format format, int length) {
+            super(index, packager, format, length);
+        }
+
+        @Override
+        int decode(ISOComponent m, byte[] b, int offset) throws ISOException {
+            final int value = valueLength(b, offset);
+
+            if (value < 0) {
+                return super.decode(m, b, offset);
+            }
+
+            final byte[] bytes = new byte[value];
+            System.arraycopy(b, offset + format.prefix, bytes, 0, value);
+            m.set(new ISOBinaryField(index, bytes));
+
+            return format.prefix + value;
+        }
+
+    }
+
+    /**
+     * Decoder of binary fields holding an inner message, like the PDS of DE 48. The PDS subfields are unpacked straight
+     * from the buffer of the message.
+     */
+    private static final class MessageDecoder extends PrefixedDecoder {
+
+        private final ISOPackager packager;
+
+        MessageDecoder(int index, ISOFieldPackager field, Format format, int length, ISOPackager packager) {
+            super(index, field, format, length);
+            this.packager = packager;
+        }
+
+        @Override
+        int decode(ISOComponent m, byte[] b, int offset) throws ISOException {
+            final int value = valueLength(b, offset);
+
+            if (value < 0) {
+                return super.decode(m, b, offset);
+            }
+
+            final ISOMsg message = new ISOMsg(index);
+            message.setPackager(packager);
+
+            if (packager instanceof MasterCardSubfieldPackager) {
+                ((MasterCardSubfieldPackager) packager).unpack(message, b, offset + format.prefix, value);
+            } else {
+                final byte[] bytes = new byte[value];
+                System.arraycopy(b, offset + format.prefix, bytes, 0, value);
+                packager.unpack(message, bytes);
+            }
+
+            m.set(message);
+
+            return format.prefix + value;
+        }
+
+    }
+
+}
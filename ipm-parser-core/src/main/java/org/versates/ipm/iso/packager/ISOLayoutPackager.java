@@ -0,0 +1,171 @@
+package org.versates.ipm.iso.packager;
+
+import org.jpos.iso.ISOBitMap;
+import org.jpos.iso.ISOBitMapPackager;
+import org.jpos.iso.ISOComponent;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.packager.GenericPackager;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Generic packager of the ISO 8583 layouts of IPM files. Besides the behavior of <code>GenericPackager</code>, it
+ * unpacks messages starting at an offset of a shared buffer, so the contents of a file do not need to be copied
+ * message by message, decoding the fields through the decoders compiled from the layout by the
+ * {@link ISOLayoutCompiler}.
+ *
+ * @author Ramses Vidor
+ */
+public class ISOLayoutPackager extends GenericPackager {
+
+    private static final int TERTIARY_BITMAP_FIELD = 65;
+    private static final int MAX_SECONDARY_FIELD = 128;
+
+    private final ISOFieldDecoder[] decoders;
+
+    /**
+     * Constructs an instance of this packager from the ISO 8583 layout configuration.
+     *
+     * @param configuration The XML configuration of the ISO 8583 layout
+     * @throws ISOException If the configuration is not valid
+     */
+    public ISOLayoutPackager(InputStream configuration) throws ISOException {
+        super(configuration);
+        decoders = ISOLayoutCompiler.compile(fld);
+    }
+
+    /**
+     * Unpacks the ISO 8583 message found at the offset of the buffer.
+     *
+     * @param m The ISO component to be filled with the message fields
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the message in the buffer
+     * @param limit The position after the last valid byte of the buffer
+     * @return the number of bytes consumed by the message
+     * @throws ISOException If the message can not be unpacked or does not fit between the offset and the limit
+     */
+    public int unpack(ISOComponent m, byte[] b, int offset, int limit) throws ISOException {
+        return unpack(m, b, offset, limit, null);
+    }
+
+    /**
+     * Indexes the ISO 8583 message found at the offset of the buffer: the bitmap is unpacked into the message, and
+     * the position of every other present field is recorded, so that fields can be decoded later, one by one, by
+     * {@link #decode(ISOComponent, int, byte[], int)}. Absent fields are recorded as -1.
+     *
+     * @param m The ISO component to be filled with the message bitmap
+     * @param b The buffer with the message content
+     * @param offset The position of the first byte of the message in the buffer
+     * @param limit The position after the last valid byte of the buffer
+     * @param positions The position of each field in the buffer, by field number, with {@link #getFieldCount()} entries
+     * @return the number of bytes consumed by the message
+     * @throws ISOException If the message can not be framed or does not fit between the offset and the limit
+     */
+    public int index(ISOComponent m, byte[] b, int offset, int limit, int[] positions) throws ISOException {
+        Arrays.fill(positions, -1);
+        return unpack(m, b, offset, limit, positions);
+    }
+
+    /**
+     * Decodes one field of a message indexed by {@link #index(ISOComponent, byte[], int, int, int[])}.
+     *
+     * @param m The ISO component to be filled with the field
+     * @param field The field number
+     * @param b The buffer with the message content
+     * @param position The position of the field in the buffer
+     * @throws ISOException If the field can not be unpacked
+     */
+    public void decode(ISOComponent m, int field, byte[] b, int position) throws ISOException {
+        try {
+            decoder(field).decode(m, b, position);
+        } catch (ISOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ISOException(e.getMessage() + " field=" + field, e);
+        }
+    }
+
+    /**
+     * Returns the number of field numbers of the layout, which is the length of the positions of an index.
+     *
+     * @return the number of field numbers of the layout
+     */
+    public int getFieldCount() {
+        return decoders.length;
+    }
+
+    private int unpack(ISOComponent m, byte[] b, int offset, int limit, int[] positions) throws ISOException {
+        if (m.getComposite() != m) {
+            throw new ISOException("Can't call packager on non Composite");
+        }
+
+        int consumed = offset;
+
+        try {
+            if (m instanceof ISOMsg && headerLength > 0) {
+                final byte[] header = new byte[headerLength];
+                System.arraycopy(b, consumed, header, 0, headerLength);
+                ((ISOMsg) m).setHeader(header);
+                consumed += headerLength;
+            }
+
+            if (fld[0] != null && !(fld[0] instanceof ISOBitMapPackager)) {
+                consumed += unpackField(m, 0, b, consumed, positions);
+            }
+
+            BitSet bitmap = null;
+            int maxField = fld.length;
+
+            if (emitBitMap()) {
+                final ISOBitMap component = new ISOBitMap(-1);
+                consumed += getBitMapfieldPackager().unpack(component, b, consumed);
+                bitmap = (BitSet) component.getValue();
+                m.set(component);
+                maxField = Math.min(maxField, bitmap.size());
+            }
+
+            for (int i = getFirstField(); i < maxField; i++) {
+                if ((bitmap == null && fld[i] == null) || (maxField > MAX_SECONDARY_FIELD && i == TERTIARY_BITMAP_FIELD)) {
+                    continue;
+                }
+
+                if (bitmap == null || bitmap.get(i)) {
+                    consumed += unpackField(m, i, b, consumed, positions);
+                }
+            }
+        } catch (ISOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new ISOException(e.getMessage() + " consumed=" + (consumed - offset), e);
+        }
+
+        if (consumed > limit) {
+            throw new ISOException("message exceeds the buffer limit consumed=" + (consumed - offset));
+        }
+
+        return consumed - offset;
+    }
+
+    private int unpackField(ISOComponent m, int i, byte[] b, int offset, int[] positions) throws ISOException {
+        if (positions == null) {
+            return decoder(i).decode(m, b, offset);
+        }
+
+        positions[i] = offset;
+        return decoder(i).skip(b, offset);
+    }
+
+    private ISOFieldDecoder decoder(int i) throws ISOException {
+        final ISOFieldDecoder decoder = (i >= 0 && i < decoders.length) ? decoders[i] : null;
+
+        if (decoder == null) {
+            throw new ISOException("field packager '" + i + "' is null");
+        }
+
+        return decoder;
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.versates.ipm.iso.packager;
+
+import org.jpos.iso.ISOException;
+
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide registry of the packagers of the ISO 8583 layouts. The XML configuration of each layout is read once,
+ * when its packager is first requested, and the packager is then shared by every parser of the layout. Packagers are
+ * only read while unpacking, so sharing them between threads is safe.
+ *
+ * @author Ramses Vidor
+ */
+public enum ISOPackagerRegistry {
+    SINGLETON;
+
+    private static final ConcurrentMap<ISOLayout, ISOLayoutPackager> PACKAGERS =
+            new ConcurrentHashMap<ISOLayout, ISOLayoutPackager>();
+    private static final Map<ISOLayout, AtomicInteger> BUILT = new EnumMap<ISOLayout, AtomicInteger>(ISOLayout.class);
+
+    static {
+        for (ISOLayout layout : ISOLayout.values()) {
+            BUILT.put(layout, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Returns the packager of the ISO 8583 layout, building it from the layout configuration on first use.
+     *
+     * @param layout The ISO 8583 layout
+     * @return the packager shared by all the parsers of the layout
+     * @throws ISOLayoutNotFoundException If the configuration of the layout can not be found or is not valid
+     */
+    public static ISOLayoutPackager getPackager(ISOLayout layout) {
+        ISOLayoutPackager packager = PACKAGERS.get(layout);
+
+        if (packager == null) {
+            synchronized (PACKAGERS) {
+                packager = PACKAGERS.get(layout);
+
+                if (packager == null) {
+                    packager = build(layout);
+                    PACKAGERS.put(layout, packager);
+                }
+            }
+        }
+
+        return packager;
+    }
+
+    /**
+     * Returns the number of packagers built since the process started, for all the layouts.
+     *
+     * @return the number of packagers built
+     */
+    public static int built() {
+        int built = 0;
+
+        for (AtomicInteger counter : BUILT.values()) {
+            built += counter.get();
+        }
+
+        return built;
+    }
+
+    /**
+     * Returns the number of packagers of the ISO 8583 layout built since the process started.
+     *
+     * @param layout The ISO 8583 layout
+     * @return the number of packagers of the layout built
+     */
+    public static int built(ISOLayout layout) {
+        return BUILT.get(layout).get();
+    }
+
+    private static ISOLayoutPackager build(ISOLayout layout) {
+        final ClassLoader loader = ISOPackagerRegistry.class.getClassLoader();
+
+        try {
+            InputStream configuration = loader.getResourceAsStream(layout.getConfigurationPath());
+
+            if (configuration == null) {
+                configuration = loader.getResourceAsStream("/" + layout.getConfigurationPath());
+            }
+
+            final ISOLayoutPackager packager = new ISOLayoutPackager(configuration);
+            BUILT.get(layout).incrementAndGet();
+
+            return packager;
+        } catch (ISOException e) {
+            throw new ISOLayoutNotFoundException(e);
+        }
+    }
+
+}
@@ -25,8 +25,13 @@ public class MasterCardASCIISubfieldPackager extends MasterCardSubfieldPackager
     }
 
     @Override
-    protected String transcode(byte[] bytes) {
-        return new String(bytes);
+    protected String transcode(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length);
+    }
+
+    @Override
+    protected int digit(byte b) {
+        return (b >= '0' && b <= '9') ? b - '0' : -1;
     }
 
 }
@@ -10,6 +10,7 @@ import org.jpos.iso.EbcdicPrefixer;
 public class MasterCardEBCDICSubfieldPackager extends MasterCardSubfieldPackager {
 
     private static final long serialVersionUID = -713999477959913829L;
+    private static final int ZERO = 0xF0;
 
     /**
      * Constructs an instance of this object.
@@ -25,8 +26,14 @@ public class MasterCardEBCDICSubfieldPackager extends MasterCardSubfieldPackager
     }
 
     @Override
-    protected String transcode(byte[] bytes) {
-        return new String(new String(bytes, ISOLayout.MASTERCARD_EBCDIC.getCharset()).getBytes());
+    protected String transcode(byte[] bytes, int offset, int length) {
+        return new String(bytes, offset, length, ISOLayout.MASTERCARD_EBCDIC.getCharset());
+    }
+
+    @Override
+    protected int digit(byte b) {
+        final int digit = (b & 0xFF) - ZERO;
+        return (digit >= 0 && digit <= 9) ? digit : -1;
     }
 
 }
@@ -1,6 +1,5 @@
 package org.versates.ipm.iso.packager;
 
-import org.apache.commons.lang.StringUtils;
 import org.jpos.iso.ISOComponent;
 import org.jpos.iso.ISOException;
 import org.jpos.iso.ISOField;
@@ -11,7 +10,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 /**
- * Extraction class of ISO 8583 PDS subfields.
+ * Extraction class of ISO 8583 PDS subfields. Each PDS is a 4-digit tag followed by a 3-digit length and the value;
+ * the tags and lengths are read digit by digit from the bytes of DE 48 and only the values are decoded.
  *
  * @author Ramses Vidor
  */
@@ -19,7 +19,9 @@ public abstract class MasterCardSubfieldPackager extends EuroSubFieldPackager im
 
     private static final long serialVersionUID = 1291027855911332870L;
 
-    private final int tagOffset = 7;
+    private static final int TAG_LENGTH = 4;
+    private static final int LENGTH_LENGTH = 3;
+    private static final int TAG_OFFSET = TAG_LENGTH + LENGTH_LENGTH;
 
     /**
      * Transcodes an ISO 8583 message from <code> String </ code> to <code> byte [] </ code>
@@ -30,12 +32,22 @@ public abstract class MasterCardSubfieldPackager extends EuroSubFieldPackager im
     protected abstract byte[] transcode(String message);
 
     /**
-     * Transcodes an ISO 8583 message from <code> byte [] </ code> to <code> String </ code>
+     * Transcodes part of an ISO 8583 message from <code> byte [] </ code> to <code> String </ code>
      *
-     * @param bytes Content of the ISO 8583 message to be transcoded into <code> byte [] </ code>
-     * @return transcoded content in bytes
+     * @param bytes Content of the ISO 8583 message to be transcoded
+     * @param offset The position of the first byte to be transcoded
+     * @param length The number of bytes to be transcoded
+     * @return transcoded content
+     */
+    protected abstract String transcode(byte[] bytes, int offset, int length);
+
+    /**
+     * Returns the value of a decimal digit in the encoding used.
+     *
+     * @param b The encoded digit
+     * @return the value of the digit, or -1 if the byte is not a digit
      */
-    protected abstract String transcode(byte[] bytes);
+    protected abstract int digit(byte b);
 
     /**
      * Converts the extracted information to the ISO 8583 standard of the IPM file according to the encoding used.
@@ -55,8 +67,8 @@ public abstract class MasterCardSubfieldPackager extends EuroSubFieldPackager im
                 if (entry.getValue() instanceof ISOField) {
                     final ISOComponent field = entry.getValue();
                     final String content = (String) field.getValue();
-                    message.append(padLeft((Integer) field.getKey(), 4));
-                    message.append(padLeft(content.length(), 3));
+                    appendDigits(message, (Integer) field.getKey(), TAG_LENGTH);
+                    appendDigits(message, content.length(), LENGTH_LENGTH);
                     message.append(content);
                 }
             }
@@ -75,36 +87,79 @@ public abstract class MasterCardSubfieldPackager extends EuroSubFieldPackager im
      */
     @Override
     public int unpack(final ISOComponent m, final byte[] buffer) throws ISOException {
-        String message = transcode(buffer);
-        int length = 0;
+        return unpack(m, buffer, 0, buffer.length);
+    }
 
-        if (StringUtils.isNotEmpty(message)) {
-            length = message.length();
+    /**
+     * Extracts the PDS subfields found in a range of the buffer, without copying it.
+     *
+     * @param m The in-process ISO component
+     * @param buffer The buffer with the ISO 8583 content to be processed
+     * @param offset The position of the first byte of the subfields
+     * @param length The number of bytes of the subfields
+     * @return the number of bytes consumed
+     * @throws ISOException Throws an exception if the extraction fails
+     */
+    public int unpack(final ISOComponent m, final byte[] buffer, final int offset, final int length)
+            throws ISOException {
+        final int limit = offset + length;
+        int position = offset;
 
-            while (message.length() > 0) {
-                final ISOField field = unpackField(message);
-                m.set(field);
-                message = message.substring(tagOffset + ((String) field.getValue()).length());
-            }
+        while (position < limit) {
+            position = unpackField(m, buffer, position, limit);
         }
 
         return length;
     }
 
-    private ISOField unpackField(final String message) throws ISOException {
-        int tagSize = 4;
-        String index = message.substring(0, tagSize);
+    private int unpackField(final ISOComponent m, final byte[] buffer, final int offset, final int limit)
+            throws ISOException {
+        final int tag = parseDigits(buffer, offset, TAG_LENGTH, limit);
 
-        if (!index.matches("[0-9]{" + tagSize + ",}")) {
-            throw new ISOException("ISO Message may be corrupted. Invalid field index: " + index);
+        if (tag < 0) {
+            throw new ISOException("ISO Message may be corrupted. Invalid field index: "
+                    + transcode(buffer, offset, Math.min(TAG_LENGTH, limit - offset)));
         }
 
-        return new ISOField(Integer.parseInt(index), message.substring(tagOffset,
-                Integer.parseInt(message.substring(tagSize, tagOffset)) + tagOffset));
+        final int length = parseDigits(buffer, offset + TAG_LENGTH, LENGTH_LENGTH, limit);
+        final int value = offset + TAG_OFFSET;
+
+        if (length < 0 || value + length > limit) {
+            throw new ISOException("ISO Message may be corrupted. Invalid length of field: " + tag);
+        }
+
+        m.set(new ISOField(tag, transcode(buffer, value, length)));
+
+        return value + length;
+    }
+
+    private int parseDigits(final byte[] buffer, final int offset, final int digits, final int limit) {
+        if (offset + digits > limit) {
+            return -1;
+        }
+
+        int value = 0;
+
+        for (int i = offset; i < offset + digits; i++) {
+            final int digit = digit(buffer[i]);
+
+            if (digit < 0) {
+                return -1;
+            }
+
+            value = (value * 10) + digit;
+        }
+
+        return value;
     }
 
-    private String padLeft(final int value, final int paddingSize) {
-        return String.format("%0" + paddingSize + "d", value);
+    private static void appendDigits(final StringBuilder builder, final int value, final int digits) {
+        final int start = builder.length();
+        builder.append(value);
+
+        for (int i = builder.length() - start; i < digits; i++) {
+            builder.insert(start, '0');
+        }
     }
 
 }
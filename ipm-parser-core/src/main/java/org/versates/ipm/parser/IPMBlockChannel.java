@@ -0,0 +1,83 @@
+package org.versates.ipm.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel that removes the block padding of blocked IPM files. Blocked files are split into blocks of fixed length,
+ * each one ending with padding bytes which do not belong to any record, like the 1014-byte blocks of MasterCard
+ * files, made of 1012 bytes of records followed by 2 bytes of padding.
+ *
+ * @author Ramses Vidor
+ */
+final class IPMBlockChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel source;
+    private final int dataLength;
+    private final ByteBuffer padding;
+    private int position;
+
+    /**
+     * Constructs a channel over the contents of a blocked file. The source must be positioned at the beginning of a
+     * block.
+     *
+     * @param source The channel with the blocked contents
+     * @param blockLength The length of each block, padding included
+     * @param paddingLength The length of the padding at the end of each block
+     */
+    IPMBlockChannel(ReadableByteChannel source, int blockLength, int paddingLength) {
+        this.source = source;
+        this.dataLength = blockLength - paddingLength;
+        this.padding = ByteBuffer.allocate(paddingLength);
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        int total = 0;
+
+        while (target.hasRemaining()) {
+            if (position == dataLength && !skipPadding()) {
+                return (total == 0) ? -1 : total;
+            }
+
+            final ByteBuffer slice = target.duplicate();
+            slice.limit(slice.position() + Math.min(target.remaining(), dataLength - position));
+
+            final int read = source.read(slice);
+
+            if (read <= 0) {
+                return (total == 0) ? read : total;
+            }
+
+            target.position(slice.position());
+            position += read;
+            total += read;
+        }
+
+        return total;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return source.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+
+    private boolean skipPadding() throws IOException {
+        while (padding.hasRemaining()) {
+            if (source.read(padding) < 0) {
+                return false;
+            }
+        }
+
+        padding.clear();
+        position = 0;
+        return true;
+    }
+
+}
@@ -0,0 +1,280 @@
+package org.versates.ipm.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Sliding window over the contents of an IPM file. The window is either a view of an in-memory file or a bounded
+ * buffer refilled from a channel, so the memory used to read a file does not depend on its size. A buffer holds the
+ * state of one reading and is not thread-safe; parsers shared between threads are given one buffer per file.
+ *
+ * @author Ramses Vidor
+ */
+public final class IPMBuffer {
+
+    /**
+     * Default capacity of the window used when reading from a channel.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private ReadableByteChannel channel;
+    private byte[] bytes;
+    private int position;
+    private int limit;
+    private long offset;
+    private int messages;
+    private boolean exhausted;
+    private boolean deblocked;
+
+    private IPMBuffer(byte[] bytes, int position, int limit, ReadableByteChannel channel) {
+        this.bytes = bytes;
+        this.position = position;
+        this.limit = limit;
+        this.channel = channel;
+        this.exhausted = channel == null;
+    }
+
+    /**
+     * Creates a window over the whole contents of an IPM file already in memory. No copy of the contents is made.
+     *
+     * @param bytes The contents of the IPM file
+     * @return a window over the file contents
+     */
+    public static IPMBuffer wrap(byte[] bytes) {
+        return new IPMBuffer(bytes, 0, bytes.length, null);
+    }
+
+    /**
+     * Creates a window over the remaining contents of a byte buffer. Buffers backed by an array are viewed without
+     * any copy; direct buffers, like a <code>MappedByteBuffer</code>, are read through a window of the default
+     * capacity, so their contents are never copied onto the heap as a whole.
+     *
+     * @param buffer The buffer with the contents of the IPM file
+     * @return a window over the buffer contents
+     */
+    public static IPMBuffer wrap(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            final int start = buffer.arrayOffset() + buffer.position();
+            return new IPMBuffer(buffer.array(), start, start + buffer.remaining(), null);
+        }
+
+        return of(new IPMMappedChannel(buffer));
+    }
+
+    /**
+     * Creates a window over the contents of a file mapped into memory from its current position. The file is mapped
+     * window by window, which allows files larger than 2 GB.
+     *
+     * @param file The channel of the IPM file
+     * @return a window over the file contents
+     * @throws IOException If the file can not be read
+     */
+    public static IPMBuffer map(FileChannel file) throws IOException {
+        return map(file, IPMMappedChannel.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Creates a window over the contents of a file mapped into memory from its current position, mapping windows of
+     * the given length.
+     *
+     * @param file The channel of the IPM file
+     * @param window The length of each window of the file mapped into memory
+     * @return a window over the file contents
+     * @throws IOException If the file can not be read
+     */
+    public static IPMBuffer map(FileChannel file, long window) throws IOException {
+        return of(new IPMMappedChannel(file, window));
+    }
+
+    /**
+     * Creates a window of the default capacity refilled from the channel as the file is consumed.
+     *
+     * @param channel The channel from which the IPM file is read
+     * @return a window over the channel contents
+     */
+    public static IPMBuffer of(ReadableByteChannel channel) {
+        return of(channel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a window of the given capacity refilled from the channel as the file is consumed.
+     *
+     * @param channel The channel from which the IPM file is read
+     * @param capacity The initial capacity of the window, in bytes
+     * @return a window over the channel contents
+     */
+    public static IPMBuffer of(ReadableByteChannel channel, int capacity) {
+        return new IPMBuffer(new byte[capacity], 0, 0, channel);
+    }
+
+    /**
+     * Makes at least <code>length</code> bytes available from the current position, reading from the channel when
+     * needed.
+     *
+     * @param length The number of bytes required
+     * @return TRUE if the bytes are available, FALSE if the file ends before
+     * @throws IPMParserException If the channel can not be read
+     */
+    public boolean request(int length) throws IPMParserException {
+        if (available() >= length) {
+            return true;
+        }
+
+        if (!exhausted) {
+            fill(length);
+        }
+
+        return available() >= length;
+    }
+
+    /**
+     * Returns the number of bytes available in the window from the current position.
+     *
+     * @return the number of bytes available
+     */
+    public int available() {
+        return limit - position;
+    }
+
+    /**
+     * Returns the array backing the window. Valid contents are between {@link #position()} and {@link #limit()}.
+     *
+     * @return the array backing the window
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * Returns the current position into the array backing the window.
+     *
+     * @return the current position
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Returns the end of the valid contents into the array backing the window.
+     *
+     * @return the end of the valid contents
+     */
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of bytes of the file already consumed, which is the offset of the current position from the
+     * beginning of the file.
+     *
+     * @return the offset of the current position into the file
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of messages already consumed from this window.
+     *
+     * @return the number of messages consumed
+     */
+    public int messages() {
+        return messages;
+    }
+
+    /**
+     * Checks whether the block padding of the file is being removed.
+     *
+     * @return TRUE if {@link #deblock(int, int)} was called, FALSE otherwise
+     */
+    public boolean deblocked() {
+        return deblocked;
+    }
+
+    /**
+     * Removes the block padding of the rest of the file, which must be split into blocks of fixed length ending
+     * with padding bytes. The current position must be the beginning of a block.
+     *
+     * @param blockLength The length of each block, padding included
+     * @param paddingLength The length of the padding at the end of each block
+     */
+    public void deblock(int blockLength, int paddingLength) {
+        InputStream remaining = new ByteArrayInputStream(bytes, position, available());
+
+        if (!exhausted) {
+            remaining = new SequenceInputStream(remaining, Channels.newInputStream(channel));
+        }
+
+        channel = new IPMBlockChannel(Channels.newChannel(remaining), blockLength, paddingLength);
+        bytes = new byte[Math.max(DEFAULT_CAPACITY, blockLength)];
+        position = 0;
+        limit = 0;
+        exhausted = false;
+        deblocked = true;
+    }
+
+    /**
+     * Skips bytes that do not belong to any message.
+     *
+     * @param length The number of bytes to skip
+     */
+    public void discard(int length) {
+        advance(length);
+    }
+
+    /**
+     * Consumes the bytes of an extracted message.
+     *
+     * @param length The length of the message, in bytes
+     */
+    public void consume(int length) {
+        advance(length);
+        messages++;
+    }
+
+    private void advance(int length) {
+        final int skipped = Math.min(length, available());
+        position += skipped;
+        offset += skipped;
+    }
+
+    private void fill(int length) throws IPMParserException {
+        compact(length);
+
+        try {
+            final ByteBuffer target = ByteBuffer.wrap(bytes, limit, bytes.length - limit);
+
+            while (target.hasRemaining()) {
+                final int read = channel.read(target);
+
+                if (read < 0) {
+                    exhausted = true;
+                    break;
+                } else if (read == 0 && available() >= length) {
+                    break;
+                }
+
+                limit += read;
+            }
+        } catch (IOException e) {
+            throw new IPMParserException("ipmparser.buffer.unreadable", e);
+        }
+    }
+
+    private void compact(int length) {
+        final int remaining = available();
+        final byte[] target = (length > bytes.length) ? new byte[Math.max(length, bytes.length * 2)] : bytes;
+
+        System.arraycopy(bytes, position, target, 0, remaining);
+        bytes = target;
+        position = 0;
+        limit = remaining;
+    }
+
+}
@@ -1,20 +1,32 @@
 package org.versates.ipm.parser;
 
+import org.versates.ipm.iso.ISOLazyMessage;
 import org.versates.ipm.iso.ISOMessage;
 import org.versates.ipm.iso.packager.ISOLayout;
-import org.versates.ipm.iso.packager.ISOLayoutNotFoundException;
+import org.versates.ipm.iso.packager.ISOPackagerRegistry;
 import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOFieldPackager;
 import org.jpos.iso.ISOMsg;
 import org.jpos.iso.ISOPackager;
 import org.jpos.iso.packager.GenericPackager;
 
-import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Main processing class of IPM files.
+ * <p>
+ * Parsers are stateless: everything about the file being read, like the position and the number of messages already
+ * extracted, is kept by the {@link IPMBuffer}, and the packager is only read while unpacking. A single instance is
+ * therefore thread-safe and may serve concurrent parses, each one with its own buffer; {@link #getFileParser(ISOLayout)}
+ * returns the instance shared by the whole process for each layout.
  *
  * @author Ramses Vidor
  */
@@ -22,8 +34,79 @@ public abstract class IPMFileParser implements Serializable {
 
     private static final long serialVersionUID = 5695555652184529809L;
 
+    /**
+     * Returned by {@link #delimit(IPMBuffer)} when the records of the file can not be delimited without unpacking them.
+     */
+    public static final int UNDELIMITED = -1;
+
+    private static final int MAX_FIELD = 128;
+    private static final int BITMAP_LENGTH = 16;
+    private static final int MTI_DE = 0;
+    private static final int MTI_LENGTH = 4;
+    private static final int FUNCTION_CODE_DE = 24;
+    private static final ConcurrentMap<ISOLayout, IPMFileParser> PARSERS =
+            new ConcurrentHashMap<ISOLayout, IPMFileParser>();
+
     private final ISOLayout layout;
     private final ISOPackager packager;
+    private final int maxMessageLength;
+    private final boolean lazy;
+    private final IPMFilter filter;
+    private final BitSet fields;
+    private final byte[][] mtis;
+    private final byte[][] functionCodes;
+    private final byte[][] controlMti;
+
+    /**
+     * Extracts the next ISO 8583 message from the buffer, advancing its position past the bytes consumed. The buffer
+     * holds all the state of the reading, so concurrent calls with distinct buffers are safe.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @return The next ISOMessage of the IPM file, or null if there are no more messages
+     * @throws IPMParserException If there is any failure in the message extraction process of the IPM file, an exception
+     * IPMParserException is thrown
+     */
+    abstract public ISOMessage next(IPMBuffer buffer) throws IPMParserException;
+
+    /**
+     * Delimits the next record of the file without unpacking it, so that records can be unpacked later, out of order
+     * and in parallel, by {@link #unpack(byte[], int, int)}. The buffer is left positioned at the beginning of the
+     * record, with the whole record available, and the caller must consume it. Layouts whose records carry their own
+     * length can be delimited; the others return {@link #UNDELIMITED} and must be read by {@link #next(IPMBuffer)}.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @return the length of the next record, 0 if there are no more records, or {@link #UNDELIMITED}
+     * @throws IPMParserException If the contents of the IPM file can not be read
+     */
+    public int delimit(IPMBuffer buffer) throws IPMParserException {
+        return UNDELIMITED;
+    }
+
+    /**
+     * Unpacks a record, like one delimited by {@link #delimit(IPMBuffer)}. Records that can not be unpacked are
+     * returned as corrupted messages. The whole range is unpacked as a single message; layouts whose records are
+     * framed, like the RDW of EBCDIC files, skip the framing first.
+     *
+     * @param bytes The contents holding the record
+     * @param offset The position of the first byte of the record
+     * @param length The length of the record, as returned by {@link #delimit(IPMBuffer)}
+     * @return The ISOMessage of the record, or null if the record is filtered out (see {@link IPMFilter})
+     */
+    public ISOMessage unpack(byte[] bytes, int offset, int length) {
+        if (length >= MTI_LENGTH && !acceptsMti(bytes, offset)) {
+            return null;
+        }
+
+        final ISOMessage message = createMessage();
+
+        try {
+            message.unpack(bytes, offset, offset + length);
+        } catch (ISOException e) {
+            feedCorruptedMessage(message, e);
+        }
+
+        return select(message);
+    }
 
     /**
      * Processes the contents of the IPM file in <code> byte [] </ code>, generating a list of ISOMessage objects.
@@ -33,16 +116,86 @@ public abstract class IPMFileParser implements Serializable {
      * @throws IPMParserException If there is any failure in the message extraction process of the IPM file, an exception
      * IPMParserException is thrown
      */
-    abstract public List<ISOMessage> parse(byte[] bytes) throws IPMParserException;
+    public List<ISOMessage> parse(byte[] bytes) throws IPMParserException {
+        return parse(IPMBuffer.wrap(bytes));
+    }
 
     /**
-     * Constructs an instance of this object for processing files in the defined layout.
+     * Processes the contents of the IPM file in a <code>ByteBuffer</code>, generating a list of ISOMessage objects.
+     * Direct buffers, like a <code>MappedByteBuffer</code> obtained from <code>FileChannel.map</code>, are read
+     * without copying the file onto the heap.
+     *
+     * @param bytes The contents of the IPM file, from the position to the limit of the buffer
+     * @return The ISOMessage list extracted from the IPM file
+     * @throws IPMParserException If there is any failure in the message extraction process of the IPM file, an exception
+     * IPMParserException is thrown
+     */
+    public List<ISOMessage> parse(ByteBuffer bytes) throws IPMParserException {
+        return parse(IPMBuffer.wrap(bytes));
+    }
+
+    /**
+     * Processes the contents of the IPM file available through the buffer, generating a list of ISOMessage objects.
+     *
+     * @param buffer The window over the contents of the IPM file
+     * @return The ISOMessage list extracted from the IPM file
+     * @throws IPMParserException If there is any failure in the message extraction process of the IPM file, an exception
+     * IPMParserException is thrown
+     */
+    public List<ISOMessage> parse(IPMBuffer buffer) throws IPMParserException {
+        final List<ISOMessage> messages = new ArrayList<ISOMessage>();
+
+        for (ISOMessage message = next(buffer); message != null; message = next(buffer)) {
+            messages.add(message);
+        }
+
+        return messages;
+    }
+
+    /**
+     * Constructs an instance of this object for processing files in the defined layout. The packager of the layout
+     * is shared with the other parsers through the {@link ISOPackagerRegistry}.
      *
      * @param layout The layout of the file to be processed
      */
     public IPMFileParser(ISOLayout layout) {
+        this(layout, false);
+    }
+
+    /**
+     * Constructs an instance of this object for processing files in the defined layout. A lazy parser only frames the
+     * messages, recording where each field is; the fields are decoded when they are first accessed (see
+     * {@link ISOLazyMessage}).
+     *
+     * @param layout The layout of the file to be processed
+     * @param lazy Whether the fields of the messages are decoded only when accessed
+     */
+    public IPMFileParser(ISOLayout layout, boolean lazy) {
+        this(layout, lazy, IPMFilter.ALL);
+    }
+
+    /**
+     * Constructs an instance of this object for processing files in the defined layout, reading only the records and
+     * fields selected by the filter. The fields of the messages are decoded only when accessed, and the records
+     * filtered out are skipped without being decoded.
+     *
+     * @param layout The layout of the file to be processed
+     * @param filter The selection of records and fields to be read
+     */
+    public IPMFileParser(ISOLayout layout, IPMFilter filter) {
+        this(layout, true, filter);
+    }
+
+    private IPMFileParser(ISOLayout layout, boolean lazy, IPMFilter filter) {
         this.layout = layout;
-        packager = createPackager();
+        this.lazy = lazy;
+        this.filter = filter;
+        packager = ISOPackagerRegistry.getPackager(layout);
+        maxMessageLength = computeMaxMessageLength();
+        fields = filter.fields();
+        mtis = IPMFilter.encode(filter.mtis(), layout.getCharset());
+        functionCodes = IPMFilter.encode(filter.functionCodes(), layout.getCharset());
+        controlMti = IPMFilter.encode(Collections.singleton(IPMFilter.CONTROL_MTI), layout.getCharset());
     }
 
     /**
@@ -63,6 +216,52 @@ public abstract class IPMFileParser implements Serializable {
         return packager;
     }
 
+    /**
+     * Checks whether the fields of the messages are decoded only when they are first accessed.
+     *
+     * @return TRUE if the parser is lazy, FALSE otherwise
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Returns the selection of records and fields read by the parser.
+     *
+     * @return the filter of the parser, {@link IPMFilter#ALL} if nothing is filtered out
+     */
+    public IPMFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the maximum length, in bytes, that an ISO 8583 message can have in the layout in use.
+     *
+     * @return the maximum length of a message
+     */
+    public int getMaxMessageLength() {
+        return maxMessageLength;
+    }
+
+    /**
+     * Returns the parser of the ISO 8583 layout shared by the whole process, creating it on first use.
+     *
+     * @param layout ISO 8583 layout of the parser
+     * @return the shared parser instance for extracting ISO messages 8583
+     */
+    public static IPMFileParser getFileParser(ISOLayout layout) {
+        final IPMFileParser parser = PARSERS.get(layout);
+
+        if (parser != null) {
+            return parser;
+        }
+
+        final IPMFileParser created = createFileParser(layout);
+        final IPMFileParser shared = PARSERS.putIfAbsent(layout, created);
+
+        return (shared != null) ? shared : created;
+    }
+
     /**
      * Creates a parser based on the ISO 8583 layout defined.
      *
@@ -70,11 +269,43 @@ public abstract class IPMFileParser implements Serializable {
      * @return a parser instance for extracting ISO messages 8583
      */
     public static IPMFileParser createFileParser(ISOLayout layout) {
+        return createFileParser(layout, false);
+    }
+
+    /**
+     * Creates a parser based on the ISO 8583 layout defined, optionally decoding the fields of the messages only when
+     * they are first accessed. Lazy parsers are not shared by {@link #getFileParser(ISOLayout)}.
+     *
+     * @param layout ISO 8583 layout for parser creation
+     * @param lazy Whether the fields of the messages are decoded only when accessed
+     * @return a parser instance for extracting ISO messages 8583
+     */
+    public static IPMFileParser createFileParser(ISOLayout layout, boolean lazy) {
+        switch (layout) {
+            case MASTERCARD_ASCII:
+                return new IPMMasterCardPreEditFileParser(lazy);
+            case MASTERCARD_EBCDIC:
+                return new IPMMasterCardEbcdicFileParser(lazy);
+            default:
+                return createGenericFileParser();
+        }
+    }
+
+    /**
+     * Creates a parser based on the ISO 8583 layout defined, which reads only the records and fields selected by the
+     * filter. Filtering parsers are lazy and are not shared by {@link #getFileParser(ISOLayout)}; the generic layout
+     * ignores the filter.
+     *
+     * @param layout ISO 8583 layout for parser creation
+     * @param filter The selection of records and fields to be read
+     * @return a parser instance for extracting ISO messages 8583
+     */
+    public static IPMFileParser createFileParser(ISOLayout layout, IPMFilter filter) {
         switch (layout) {
             case MASTERCARD_ASCII:
-                return createMasterCardPreEditFileParser();
+                return new IPMMasterCardPreEditFileParser(filter);
             case MASTERCARD_EBCDIC:
-                return createMasterCardEbcdicFileParser();
+                return new IPMMasterCardEbcdicFileParser(filter);
             default:
                 return createGenericFileParser();
         }
@@ -110,16 +341,77 @@ public abstract class IPMFileParser implements Serializable {
     }
 
     /**
-     * Creates an ISO message for the packager in use.
+     * Creates an ISO message for the packager in use, which decodes its fields lazily if the parser is lazy.
      *
      * @return The ISOMessage created for the packager
      */
     protected ISOMessage createMessage() {
-        final ISOMessage message = new ISOMessage();
+        final ISOMessage message = lazy ? new ISOLazyMessage() : new ISOMessage();
         message.setPackager(getPackager());
         return message;
     }
 
+    /**
+     * Checks the raw MTI found at the position against the MTIs of the filter, before anything of the record is
+     * decoded.
+     *
+     * @param bytes The contents holding the record
+     * @param position The position of the first byte of the MTI
+     * @return TRUE if the record may be kept, FALSE if it is filtered out
+     */
+    protected boolean acceptsMti(byte[] bytes, int position) {
+        if (mtis == null) {
+            return true;
+        }
+
+        for (byte[] mti : mtis) {
+            int i = 0;
+
+            while (i < mti.length && bytes[position + i] == mti[i]) {
+                i++;
+            }
+
+            if (i == mti.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Applies the filter to a message just unpacked: messages whose MTI or function code (DE 24) are not wanted are
+     * discarded, and the fields outside the projection of the others are dropped before being decoded. Corrupted
+     * messages and file control messages are always kept.
+     *
+     * @param message The message unpacked by the parser
+     * @return the message, or null if it is filtered out
+     */
+    protected ISOMessage select(ISOMessage message) {
+        if (filter.isAll() || !(message instanceof ISOLazyMessage) || message.isCorrupted()) {
+            return message;
+        }
+
+        final ISOLazyMessage lazyMessage = (ISOLazyMessage) message;
+
+        try {
+            final boolean control = lazyMessage.matches(MTI_DE, controlMti, layout.getCharset());
+
+            if (!control && ((mtis != null && !lazyMessage.matches(MTI_DE, mtis, layout.getCharset()))
+                    || (functionCodes != null && !lazyMessage.matches(FUNCTION_CODE_DE, functionCodes, layout.getCharset())))) {
+                return null;
+            }
+        } catch (ISOException e) {
+            return message.setError(e);
+        }
+
+        if (fields != null) {
+            lazyMessage.retain(fields);
+        }
+
+        return message;
+    }
+
     /**
      * Fills standard corrupted message information.
      *
@@ -137,18 +429,17 @@ public abstract class IPMFileParser implements Serializable {
         return (ISOMsg) message.clone();
     }
 
-    private ISOPackager createPackager() {
-        try {
-            InputStream configuration = getClass().getClassLoader().getResourceAsStream(layout.getConfigurationPath());
+    private int computeMaxMessageLength() {
+        int length = BITMAP_LENGTH;
 
-            if (configuration == null) {
-                configuration = getClass().getClassLoader().getResourceAsStream("/" + layout.getConfigurationPath());
+        if (packager instanceof GenericPackager) {
+            for (int i = 0; i <= MAX_FIELD; i++) {
+                final ISOFieldPackager field = ((GenericPackager) packager).getFieldPackager(i);
+                length += (field != null) ? field.getMaxPackedLength() : 0;
             }
-
-            return new GenericPackager(configuration);
-        } catch (ISOException e) {
-            throw new ISOLayoutNotFoundException(e);
         }
+
+        return length;
     }
 
 }
@@ -0,0 +1,172 @@
+package org.versates.ipm.parser;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Selection of the records of an IPM file to be read by a parser: the MTIs and function codes (DE 24) wanted, and the
+ * fields to be kept of each record. A parser created with a filter (see
+ * {@link IPMFileParser#createFileParser(org.versates.ipm.iso.packager.ISOLayout, IPMFilter)}) compares the raw bytes
+ * of the MTI and of DE 24 against the filter before decoding anything, skips the records which do not match, and
+ * drops the fields outside the projection of the records it keeps, so they are never decoded.
+ * <p>
+ * File control messages (MTI 1644), like the file header and footer, are always kept, and so are the MTI, DE 24 and
+ * DE 63 of every record, which the readers need to tell the transactions apart. Corrupted records are kept as well.
+ * Filters are immutable: each <code>with</code> method returns a new filter.
+ *
+ * @author Ramses Vidor
+ */
+public final class IPMFilter implements Serializable {
+
+    private static final long serialVersionUID = 6237640519283370617L;
+
+    /**
+     * Filter which keeps every record with all its fields.
+     */
+    public static final IPMFilter ALL = new IPMFilter(null, null, null);
+
+    /**
+     * MTI of the file control messages, which are never filtered out.
+     */
+    public static final String CONTROL_MTI = "1644";
+
+    private static final int MTI_DE = 0;
+    private static final int FUNCTION_CODE_DE = 24;
+    private static final int CICLE_ID_DE = 63;
+
+    private final Set<String> mtis;
+    private final Set<String> functionCodes;
+    private final BitSet fields;
+
+    private IPMFilter(Set<String> mtis, Set<String> functionCodes, BitSet fields) {
+        this.mtis = mtis;
+        this.functionCodes = functionCodes;
+        this.fields = fields;
+    }
+
+    /**
+     * Returns a filter which keeps only the records with one of the MTIs, besides the file control messages.
+     *
+     * @param mtis The MTIs wanted, like 1240 or 1442
+     * @return the new filter
+     */
+    public IPMFilter withMtis(String... mtis) {
+        final Set<String> values = values(mtis);
+        values.add(CONTROL_MTI);
+
+        return new IPMFilter(Collections.unmodifiableSet(values), functionCodes, fields);
+    }
+
+    /**
+     * Returns a filter which keeps only the records with one of the function codes (DE 24), besides the file control
+     * messages.
+     *
+     * @param functionCodes The function codes wanted, like 200 for first presentments
+     * @return the new filter
+     */
+    public IPMFilter withFunctionCodes(String... functionCodes) {
+        return new IPMFilter(mtis, Collections.unmodifiableSet(values(functionCodes)), fields);
+    }
+
+    /**
+     * Returns a filter which keeps only the given DE fields of the records. The PDS are read from DE 48, which is kept
+     * whole.
+     *
+     * @param des The indexes of the DE fields wanted, like 4 or 48
+     * @return the new filter
+     */
+    public IPMFilter withFields(int... des) {
+        final BitSet retained = new BitSet();
+        retained.set(MTI_DE);
+        retained.set(FUNCTION_CODE_DE);
+        retained.set(CICLE_ID_DE);
+
+        for (int de : des) {
+            retained.set(de);
+        }
+
+        return new IPMFilter(mtis, functionCodes, retained);
+    }
+
+    /**
+     * Returns the MTIs wanted, including the MTI of the file control messages.
+     *
+     * @return the MTIs, or null if any MTI is wanted
+     */
+    public Set<String> mtis() {
+        return mtis;
+    }
+
+    /**
+     * Returns the function codes (DE 24) wanted.
+     *
+     * @return the function codes, or null if any function code is wanted
+     */
+    public Set<String> functionCodes() {
+        return functionCodes;
+    }
+
+    /**
+     * Returns the DEs to be kept of each record.
+     *
+     * @return the DEs, or null if every field is kept
+     */
+    public BitSet fields() {
+        return (fields == null) ? null : (BitSet) fields.clone();
+    }
+
+    /**
+     * Checks whether the filter keeps every record with all its fields.
+     *
+     * @return TRUE if nothing is filtered out, FALSE otherwise
+     */
+    public boolean isAll() {
+        return mtis == null && functionCodes == null && fields == null;
+    }
+
+    @Override
+    public String toString() {
+        return "mtis=" + mtis + ", functionCodes=" + functionCodes + ", fields=" + fields;
+    }
+
+    /**
+     * Encodes the values in the charset of a layout, so they can be compared against the raw bytes of the records.
+     *
+     * @param values The values to be encoded
+     * @param charset The charset of the layout
+     * @return the encoded values, or null if there are no values
+     */
+    static byte[][] encode(Set<String> values, Charset charset) {
+        if (values == null) {
+            return null;
+        }
+
+        final byte[][] bytes = new byte[values.size()][];
+        int i = 0;
+
+        for (String value : values) {
+            bytes[i++] = value.getBytes(charset);
+        }
+
+        return bytes;
+    }
+
+    private static Set<String> values(String... values) {
+        final Set<String> set = new LinkedHashSet<String>();
+
+        for (String value : values) {
+            if (value == null || value.trim().isEmpty()) {
+                throw new IllegalArgumentException("ipmparser.filter.invalidvalue");
+            }
+
+            set.add(value.trim());
+        }
+
+        return set;
+    }
+
+}
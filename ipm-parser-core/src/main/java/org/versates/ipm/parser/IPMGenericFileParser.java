@@ -4,8 +4,6 @@ import org.versates.ipm.iso.ISOMessage;
 import org.versates.ipm.iso.packager.ISOLayout;
 import org.apache.commons.lang.NotImplementedException;
 
-import java.util.List;
-
 /**
  * Generic parser for extracting ISO 8583 messages.
  *
@@ -23,7 +21,7 @@ public class IPMGenericFileParser extends IPMFileParser {
     }
 
     @Override
-    public List<ISOMessage> parse(byte[] bytes) {
+    public ISOMessage next(IPMBuffer buffer) {
         throw new NotImplementedException("ipmparser.notimplemented");
     }
 
@@ -0,0 +1,242 @@
+package org.versates.ipm.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Channel over the contents of a stream which may be an archived IPM file. Gzip and zip archives are detected by their
+ * magic bytes on the first read and decompressed as a stream, without temporary files; other contents are read as
+ * they are. Of a zip archive, only the first file is read.
+ * <p>
+ * Archives are decompressed by a background thread into a small ring of chunks, handed over to the reader of the
+ * channel as they are filled, so the parsing of a chunk overlaps the decompression of the next ones and the
+ * throughput is bounded by the slowest of both, not by their sum. Failures of the decompression are raised by the read
+ * that reaches them. The chunks are handed over to a single reader.
+ *
+ * @author Ramses Vidor
+ */
+public final class IPMInflaterChannel implements ReadableByteChannel {
+
+    /**
+     * Length of each chunk of decompressed contents.
+     */
+    static final int CHUNK_LENGTH = 256 * 1024;
+
+    private static final int CHUNKS = 4;
+    private static final int INFLATER_BUFFER = 64 * 1024;
+    private static final int MAGIC_LENGTH = 4;
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    private final InputStream in;
+    private final BlockingQueue<ByteBuffer> filled = new ArrayBlockingQueue<ByteBuffer>(CHUNKS + 1);
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(CHUNKS);
+    private ReadableByteChannel plain;
+    private Thread inflater;
+    private ByteBuffer current;
+    private volatile Throwable failure;
+    private volatile boolean open = true;
+
+    private IPMInflaterChannel(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Creates a channel over the contents of the stream, decompressing them if the stream is a gzip or zip archive.
+     * The stream is closed with the channel.
+     *
+     * @param in The stream with the IPM file, archived or not
+     * @return the channel over the contents of the IPM file
+     */
+    public static IPMInflaterChannel of(InputStream in) {
+        return new IPMInflaterChannel(in);
+    }
+
+    /**
+     * Checks whether the first bytes of a file are the magic bytes of a gzip or zip archive.
+     *
+     * @param head The first bytes of the file
+     * @param length The number of bytes available in <code>head</code>
+     * @return TRUE if the file is an archive
+     */
+    public static boolean isArchive(byte[] head, int length) {
+        return isGzip(head, length) || isZip(head, length);
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+
+        if (plain == null && inflater == null) {
+            start();
+        }
+
+        if (plain != null) {
+            return plain.read(target);
+        }
+
+        if (current != END && (current == null || !current.hasRemaining())) {
+            if (current != null) {
+                free.offer(current);
+            }
+
+            current = take();
+        }
+
+        if (current == END) {
+            if (failure != null) {
+                throw new IOException("ipmparser.archive.invalidfile", failure);
+            }
+
+            return -1;
+        }
+
+        final int length = Math.min(target.remaining(), current.remaining());
+        final ByteBuffer slice = current.duplicate();
+        slice.limit(slice.position() + length);
+        target.put(slice);
+        current.position(current.position() + length);
+
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+
+        open = false;
+
+        if (inflater != null) {
+            inflater.interrupt();
+            filled.clear();
+        } else if (plain != null) {
+            plain.close();
+        } else {
+            in.close();
+        }
+    }
+
+    private void start() throws IOException {
+        final byte[] head = new byte[MAGIC_LENGTH];
+        int length = 0;
+
+        for (int read = 0; length < head.length && read >= 0; length += Math.max(read, 0)) {
+            read = in.read(head, length, head.length - length);
+        }
+
+        final InputStream contents = new SequenceInputStream(new ByteArrayInputStream(head, 0, length), in);
+
+        if (isGzip(head, length)) {
+            inflate(new GZIPInputStream(contents, INFLATER_BUFFER));
+        } else if (isZip(head, length)) {
+            final ZipInputStream zip = new ZipInputStream(contents);
+            ZipEntry entry = zip.getNextEntry();
+
+            while (entry != null && entry.isDirectory()) {
+                entry = zip.getNextEntry();
+            }
+
+            if (entry == null) {
+                zip.close();
+                throw new IOException("ipmparser.archive.emptyfile");
+            }
+
+            inflate(zip);
+        } else {
+            plain = Channels.newChannel(contents);
+        }
+    }
+
+    private void inflate(final InputStream archive) {
+        for (int i = 0; i < CHUNKS; i++) {
+            free.offer(ByteBuffer.allocate(CHUNK_LENGTH));
+        }
+
+        inflater = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean interrupted = false;
+
+                try {
+                    fill(archive);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    try {
+                        archive.close();
+                    } catch (IOException ignore) {
+                    }
+
+                    if (!interrupted) {
+                        filled.offer(END);
+                    }
+                }
+            }
+        }, "ipm-inflater");
+        inflater.setDaemon(true);
+        inflater.start();
+    }
+
+    private void fill(InputStream archive) throws IOException, InterruptedException {
+        while (open) {
+            final ByteBuffer chunk = free.take();
+            final byte[] bytes = chunk.array();
+            int length = 0;
+            int read = 0;
+
+            while (length < bytes.length && (read = archive.read(bytes, length, bytes.length - length)) >= 0) {
+                length += read;
+            }
+
+            if (length > 0) {
+                chunk.clear();
+                chunk.limit(length);
+                filled.put(chunk);
+            }
+
+            if (read < 0) {
+                return;
+            }
+        }
+    }
+
+    private ByteBuffer take() throws IOException {
+        try {
+            return filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("ipmparser.archive.interrupted");
+        }
+    }
+
+    private static boolean isGzip(byte[] head, int length) {
+        return length >= 2 && head[0] == (byte) 0x1F && head[1] == (byte) 0x8B;
+    }
+
+    private static boolean isZip(byte[] head, int length) {
+        return length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4;
+    }
+
+}
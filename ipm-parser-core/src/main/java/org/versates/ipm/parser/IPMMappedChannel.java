@@ -0,0 +1,89 @@
+package org.versates.ipm.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel over the contents of a byte buffer or of a file mapped into memory. Files are mapped window by window, so
+ * files larger than the 2 GB limit of a single mapping are read without copying them onto the heap.
+ *
+ * @author Ramses Vidor
+ */
+final class IPMMappedChannel implements ReadableByteChannel {
+
+    /**
+     * Default length of each window of the file mapped into memory.
+     */
+    static final long DEFAULT_WINDOW = 256L * 1024 * 1024;
+
+    private final FileChannel file;
+    private final long window;
+    private ByteBuffer current;
+    private long mapped;
+    private boolean open = true;
+
+    /**
+     * Constructs a channel over the remaining contents of the buffer.
+     *
+     * @param buffer The buffer with the contents
+     */
+    IPMMappedChannel(ByteBuffer buffer) {
+        this.file = null;
+        this.window = 0;
+        this.current = buffer.duplicate();
+    }
+
+    /**
+     * Constructs a channel over the contents of the file, from its current position, mapped window by window.
+     *
+     * @param file The file to be mapped
+     * @param window The length of each window of the file mapped into memory
+     * @throws IOException If the position of the file can not be read
+     */
+    IPMMappedChannel(FileChannel file, long window) throws IOException {
+        this.file = file;
+        this.window = window;
+        this.mapped = file.position();
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+        if ((current == null || !current.hasRemaining()) && !map()) {
+            return -1;
+        }
+
+        final int length = Math.min(target.remaining(), current.remaining());
+        final ByteBuffer slice = current.duplicate();
+        slice.limit(slice.position() + length);
+        target.put(slice);
+        current.position(current.position() + length);
+
+        return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        current = null;
+    }
+
+    private boolean map() throws IOException {
+        if (file == null || mapped >= file.size()) {
+            return false;
+        }
+
+        final long length = Math.min(window, file.size() - mapped);
+        current = file.map(FileChannel.MapMode.READ_ONLY, mapped, length);
+        mapped += length;
+
+        return true;
+    }
+
+}
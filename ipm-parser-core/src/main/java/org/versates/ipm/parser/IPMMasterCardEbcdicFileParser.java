@@ -2,15 +2,14 @@ package org.versates.ipm.parser;
 
 import org.versates.ipm.iso.ISOMessage;
 import org.versates.ipm.iso.packager.ISOLayout;
-import org.apache.commons.lang.StringUtils;
 import org.jpos.iso.ISOException;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
-
 /**
- * IPM parser class for IPM MasterCard files with EBCDIC encoding.
+ * IPM parser class for IPM MasterCard files with EBCDIC encoding. Records framed by a 4-byte Record Descriptor Word
+ * (RDW), which holds the length of the record, are read directly from one to the next, removing the padding of the
+ * 1014-byte blocks when the file is blocked. Files without RDW are scanned for the MTIs of the messages, comparing the
+ * raw EBCDIC bytes against the known MTIs. Messages are unpacked in place from the window over the file contents;
+ * records framed by RDW can also be delimited first and unpacked later, in parallel.
  *
  * @author Ramses Vidor
  */
@@ -18,50 +17,253 @@ public class IPMMasterCardEbcdicFileParser extends IPMFileParser {
 
     private static final long serialVersionUID = -3686970010442090387L;
 
-    private static final Pattern MTI_PATTERN = Pattern.compile("^(1240|1442|1644|1740)$");
-
-    private final List<ISOMessage> messages = new ArrayList<ISOMessage>();
+    private static final byte[][] MTIS = encode("1240", "1442", "1644", "1740");
+    private static final byte MTI_FIRST_BYTE = MTIS[0][0];
+    private static final byte RDW_FIRST_BYTE = 0;
+    private static final int MTI_LENGTH = 4;
+    private static final int RDW_LENGTH = 4;
+    private static final int BLOCK_LENGTH = 1014;
+    private static final int BLOCK_PADDING_LENGTH = 2;
+    private static final int BLOCK_DATA_LENGTH = BLOCK_LENGTH - BLOCK_PADDING_LENGTH;
+    private static final int BLOCK_SAMPLE = 8;
+    private static final byte PADDING = 0x40;
 
     /**
      * Constructs an instance of this parser.
      */
     public IPMMasterCardEbcdicFileParser() {
-        super(ISOLayout.MASTERCARD_EBCDIC);
+        this(false);
+    }
+
+    /**
+     * Constructs an instance of this parser, optionally decoding the fields of the messages only when they are first
+     * accessed.
+     *
+     * @param lazy Whether the fields of the messages are decoded only when accessed
+     */
+    public IPMMasterCardEbcdicFileParser(boolean lazy) {
+        super(ISOLayout.MASTERCARD_EBCDIC, lazy);
+    }
+
+    /**
+     * Constructs an instance of this parser which reads only the records and fields selected by the filter.
+     *
+     * @param filter The selection of records and fields to be read
+     */
+    public IPMMasterCardEbcdicFileParser(IPMFilter filter) {
+        super(ISOLayout.MASTERCARD_EBCDIC, filter);
     }
 
     @Override
-    public List<ISOMessage> parse(byte[] bytes) {
-        String content = new String(bytes, getLayout().getCharset());
+    public ISOMessage next(IPMBuffer buffer) throws IPMParserException {
+        deblock(buffer);
+
+        while (buffer.request(MTI_LENGTH + 1)) {
+            final ISOMessage message;
+
+            if (isRecord(buffer)) {
+                message = extractRecord(buffer);
+            } else if (isMti(buffer.array(), buffer.position())) {
+                message = extractMessage(buffer);
+            } else {
+                buffer.discard(1 + skip(buffer.array(), buffer.position() + 1, buffer.limit() - MTI_LENGTH));
+                continue;
+            }
 
-        if (StringUtils.isNotEmpty(content)) {
-            extractMessages(content);
+            if (message != null) {
+                return message;
+            }
         }
 
-        return messages;
+        return null;
     }
 
-    private void extractMessages(String content) {
-        for (int i = 0; i < content.length(); i++) {
-            if (content.length() > (i + 4) && MTI_PATTERN.matcher(content.substring(i, i + 4)).matches()) {
-                i += extractMessage(content.substring(i));
+    @Override
+    public int delimit(IPMBuffer buffer) throws IPMParserException {
+        deblock(buffer);
+
+        while (buffer.request(MTI_LENGTH + 1)) {
+            if (isRecord(buffer)) {
+                final int length = RDW_LENGTH + readRdw(buffer.array(), buffer.position());
+                buffer.request(length);
+                return Math.min(length, buffer.available());
+            } else if (isMti(buffer.array(), buffer.position())) {
+                return UNDELIMITED;
             }
+
+            buffer.discard(1 + skip(buffer.array(), buffer.position() + 1, buffer.limit() - MTI_LENGTH));
         }
+
+        return 0;
     }
 
-    private int extractMessage(String content) {
-        ISOMessage message = createMessage();
-        int i = -1;
+    @Override
+    public ISOMessage unpack(byte[] bytes, int offset, int length) {
+        if (length >= RDW_LENGTH + MTI_LENGTH && !acceptsMti(bytes, offset + RDW_LENGTH)) {
+            return null;
+        }
+
+        final ISOMessage message = createMessage();
 
         try {
-            i += message.unpack(content.getBytes(getLayout().getCharset()));
+            message.unpack(bytes, offset + RDW_LENGTH, offset + length);
         } catch (ISOException e) {
             feedCorruptedMessage(message, e);
-            i += 2;
         }
 
-        messages.add(message);
+        return select(message);
+    }
+
+    private void deblock(IPMBuffer buffer) throws IPMParserException {
+        if (buffer.offset() == 0 && !buffer.deblocked() && isBlocked(buffer)) {
+            buffer.deblock(BLOCK_LENGTH, BLOCK_PADDING_LENGTH);
+        }
+    }
+
+    private static byte[][] encode(String... mtis) {
+        final byte[][] bytes = new byte[mtis.length][];
+
+        for (int i = 0; i < mtis.length; i++) {
+            bytes[i] = mtis[i].getBytes(ISOLayout.MASTERCARD_EBCDIC.getCharset());
+        }
+
+        return bytes;
+    }
+
+    private int skip(byte[] bytes, int from, int to) {
+        int i = from;
+
+        while (i < to && bytes[i] != MTI_FIRST_BYTE && bytes[i] != RDW_FIRST_BYTE) {
+            i++;
+        }
+
+        return Math.max(0, i - from);
+    }
+
+    private boolean isBlocked(IPMBuffer buffer) throws IPMParserException {
+        if (!buffer.request(BLOCK_LENGTH)) {
+            return false;
+        }
+
+        buffer.request(BLOCK_LENGTH * BLOCK_SAMPLE);
+
+        final byte[] bytes = buffer.array();
+        final int start = buffer.position();
+        final int blocks = buffer.available() / BLOCK_LENGTH;
+
+        for (int i = 1; i <= blocks; i++) {
+            final int end = start + (i * BLOCK_LENGTH);
+
+            if (bytes[end - 1] != PADDING || bytes[end - 2] != PADDING) {
+                return false;
+            }
+        }
+
+        return isRecordChain(bytes, start, blocks * BLOCK_DATA_LENGTH);
+    }
+
+    private boolean isRecordChain(byte[] bytes, int start, int length) {
+        int i = 0;
+
+        while (i + RDW_LENGTH + MTI_LENGTH <= length) {
+            final int recordLength = readBlockedRdw(bytes, start, i);
+
+            if (recordLength == 0) {
+                return true;
+            } else if (!isRecordLength(recordLength) || !isBlockedMti(bytes, start, i + RDW_LENGTH)) {
+                return false;
+            }
+
+            i += RDW_LENGTH + recordLength;
+        }
+
+        return i > 0;
+    }
+
+    private int readBlockedRdw(byte[] bytes, int start, int logical) {
+        int length = 0;
+
+        for (int i = 0; i < RDW_LENGTH; i++) {
+            length = (length << 8) | (bytes[physical(start, logical + i)] & 0xFF);
+        }
+
+        return length;
+    }
+
+    private boolean isBlockedMti(byte[] bytes, int start, int logical) {
+        for (byte[] mti : MTIS) {
+            int i = 0;
+
+            while (i < MTI_LENGTH && bytes[physical(start, logical + i)] == mti[i]) {
+                i++;
+            }
+
+            if (i == MTI_LENGTH) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int physical(int start, int logical) {
+        return start + logical + ((logical / BLOCK_DATA_LENGTH) * BLOCK_PADDING_LENGTH);
+    }
+
+    private boolean isRecord(IPMBuffer buffer) throws IPMParserException {
+        if (!buffer.request(RDW_LENGTH + MTI_LENGTH)) {
+            return false;
+        }
+
+        final int length = readRdw(buffer.array(), buffer.position());
+        return isRecordLength(length) && isMti(buffer.array(), buffer.position() + RDW_LENGTH);
+    }
+
+    private boolean isRecordLength(int length) {
+        return length > MTI_LENGTH && length <= getMaxMessageLength();
+    }
+
+    private int readRdw(byte[] bytes, int position) {
+        return ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+    }
+
+    private boolean isMti(byte[] bytes, int position) {
+        if (bytes[position] != MTI_FIRST_BYTE) {
+            return false;
+        }
+
+        for (byte[] mti : MTIS) {
+            if (bytes[position + 1] == mti[1] && bytes[position + 2] == mti[2] && bytes[position + 3] == mti[3]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private ISOMessage extractRecord(IPMBuffer buffer) throws IPMParserException {
+        final int length = RDW_LENGTH + readRdw(buffer.array(), buffer.position());
+        buffer.request(length);
+
+        final ISOMessage message = unpack(buffer.array(), buffer.position(), Math.min(length, buffer.available()));
+        buffer.consume(length);
+
+        return message;
+    }
+
+    private ISOMessage extractMessage(IPMBuffer buffer) throws IPMParserException {
+        ISOMessage message = createMessage();
+        buffer.request(getMaxMessageLength());
+
+        try {
+            buffer.consume(message.unpack(buffer.array(), buffer.position(), buffer.limit()));
+        } catch (ISOException e) {
+            feedCorruptedMessage(message, e);
+            buffer.consume(2);
+        }
 
-        return i;
+        return select(message);
     }
 
 }
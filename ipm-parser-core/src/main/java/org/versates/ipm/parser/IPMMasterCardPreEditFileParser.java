@@ -4,11 +4,11 @@ import org.versates.ipm.iso.ISOMessage;
 import org.versates.ipm.iso.packager.ISOLayout;
 import org.jpos.iso.ISOException;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
- * IPM parser class for IPM MasterCard files with ASCII / PRE-EDIT encoding.
+ * IPM parser class for IPM MasterCard files with ASCII / PRE-EDIT encoding. Messages are unpacked one after the other,
+ * in place, from the window over the file contents; when a message can not be unpacked, the parser moves one byte
+ * forward and tries again. As messages carry no length, a filtering parser frames each message before checking its
+ * MTI and function code.
  *
  * @author Ramses Vidor
  */
@@ -24,45 +24,58 @@ public class IPMMasterCardPreEditFileParser extends IPMFileParser {
      * Constructs an instance of this parser.
      */
     public IPMMasterCardPreEditFileParser() {
-        super(ISOLayout.MASTERCARD_ASCII);
+        this(false);
     }
 
-    @Override
-    public List<ISOMessage> parse(byte[] bytes) throws IPMParserException {
-        return parse(bytes, DEFAULT_HEADER_LENGTH);
+    /**
+     * Constructs an instance of this parser, optionally decoding the fields of the messages only when they are first
+     * accessed.
+     *
+     * @param lazy Whether the fields of the messages are decoded only when accessed
+     */
+    public IPMMasterCardPreEditFileParser(boolean lazy) {
+        super(ISOLayout.MASTERCARD_ASCII, lazy);
     }
 
-    private List<ISOMessage> parse(byte[] bytes, int position) throws IPMParserException {
-        final List<ISOMessage> messages = new ArrayList<ISOMessage>();
+    /**
+     * Constructs an instance of this parser which reads only the records and fields selected by the filter.
+     *
+     * @param filter The selection of records and fields to be read
+     */
+    public IPMMasterCardPreEditFileParser(IPMFilter filter) {
+        super(ISOLayout.MASTERCARD_ASCII, filter);
+    }
 
-        try {
-            if (position < (bytes.length - MIN_MESSAGE_LENGTH)) {
-                final ISOMessage message = createMessage();
-                byte[] messageContent = createMessageBuffer(bytes, position);
-                position += message.unpack(messageContent);
-                messages.add(message);
-                parse(bytes, position);
-            }
-        } catch (final ISOException e) {
-            if ((position == OVERFLOW_LIMIT) && (messages.size() == 0)) {
-                throw new IPMParserException("ipmparser.parser.nomessages", e);
+    @Override
+    public ISOMessage next(IPMBuffer buffer) throws IPMParserException {
+        if (buffer.offset() == 0) {
+            if (!buffer.request(DEFAULT_HEADER_LENGTH)) {
+                return null;
             }
 
-            parse(bytes, ++position);
+            buffer.discard(DEFAULT_HEADER_LENGTH);
         }
 
-        return messages;
-    }
+        while (buffer.request(MIN_MESSAGE_LENGTH + 1)) {
+            final ISOMessage message = createMessage();
+            buffer.request(getMaxMessageLength());
+
+            try {
+                buffer.consume(message.unpack(buffer.array(), buffer.position(), buffer.limit()));
 
-    private byte[] createMessageBuffer(final byte[] bytes, final int position) {
-        int c = 0;
-        final byte[] buffer = new byte[bytes.length - position];
+                if (select(message) != null) {
+                    return message;
+                }
+            } catch (final ISOException e) {
+                if ((buffer.offset() == OVERFLOW_LIMIT) && (buffer.messages() == 0)) {
+                    throw new IPMParserException("ipmparser.parser.nomessages", e);
+                }
 
-        for (int i = position; i < bytes.length; i++) {
-            buffer[c++] = bytes[i];
+                buffer.discard(1);
+            }
         }
 
-        return buffer;
+        return null;
     }
 
 }
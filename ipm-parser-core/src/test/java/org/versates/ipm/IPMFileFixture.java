@@ -0,0 +1,149 @@
+package org.versates.ipm;
+
+import org.versates.ipm.parser.IPMFileParser;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds synthetic IPM files for tests.
+ */
+public final class IPMFileFixture {
+
+    private IPMFileFixture() {
+    }
+
+    public static byte[] ebcdic(int transactions) throws ISOException, IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] message : messages(transactions)) {
+            out.write(message);
+        }
+
+        return out.toByteArray();
+    }
+
+    public static byte[] rdw(int transactions) throws ISOException, IOException {
+        return rdw(messages(transactions));
+    }
+
+    public static byte[] rdw(List<byte[]> messages) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] message : messages) {
+            writeRdw(out, message.length);
+            out.write(message);
+        }
+
+        writeRdw(out, 0);
+
+        return out.toByteArray();
+    }
+
+    public static byte[] blocked(int transactions) throws ISOException, IOException {
+        final byte[] records = rdw(transactions);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < records.length; i += 1012) {
+            final int length = Math.min(1012, records.length - i);
+            out.write(records, i, length);
+
+            for (int j = length; j < 1014; j++) {
+                out.write(0x40);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    public static byte[] preEdit(int transactions) throws ISOException, IOException {
+        return preEdit(messages(IPMFileParser.createMasterCardPreEditFileParser().getPackager(), transactions));
+    }
+
+    public static byte[] preEdit(List<byte[]> messages) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 132; i++) {
+            out.write(' ');
+        }
+
+        for (byte[] message : messages) {
+            out.write(message);
+        }
+
+        return out.toByteArray();
+    }
+
+    public static List<byte[]> messages(int transactions) throws ISOException {
+        return messages(IPMFileParser.createMasterCardEbcdicFileParser().getPackager(), transactions);
+    }
+
+    public static List<byte[]> messages(ISOPackager packager, int transactions) throws ISOException {
+        final List<byte[]> messages = new ArrayList<byte[]>();
+
+        messages.add(header(packager).pack());
+
+        for (int i = 1; i <= transactions; i++) {
+            messages.add(transaction(packager, i).pack());
+        }
+
+        messages.add(footer(packager, transactions).pack());
+
+        return messages;
+    }
+
+    public static ISOMsg header(ISOPackager packager) throws ISOException {
+        final ISOMsg message = message(packager, "1644", "697");
+        message.set(pds(105, "0021409150000000000000001"));
+        message.set(71, "00000001");
+        return message;
+    }
+
+    public static ISOMsg footer(ISOPackager packager, int transactions) throws ISOException {
+        final ISOMsg message = message(packager, "1644", "695");
+        message.set(pds(306, String.format("%08d", transactions + 2)));
+        message.set(71, String.format("%08d", transactions + 2));
+        return message;
+    }
+
+    public static ISOMsg transaction(ISOPackager packager, int sequence) throws ISOException {
+        final ISOMsg message = message(packager, "1240", "200");
+        message.set(2, "550000000000" + String.format("%04d", sequence % 10000));
+        message.set(3, "000000");
+        message.set(4, String.format("%012d", sequence * 100L + 99));
+        message.set(12, "141020123456");
+        message.set(26, "5411");
+        message.set(pds(148, "9862"));
+        message.set(49, "986");
+        message.set(63, String.format("%016d", sequence));
+        message.set(71, String.format("%08d", sequence + 1));
+        return message;
+    }
+
+    private static void writeRdw(ByteArrayOutputStream out, int length) {
+        out.write(length >>> 24);
+        out.write(length >>> 16);
+        out.write(length >>> 8);
+        out.write(length);
+    }
+
+    private static ISOMsg message(ISOPackager packager, String mti, String functionCode) throws ISOException {
+        final ISOMsg message = new ISOMsg();
+        message.setPackager(packager);
+        message.setMTI(mti);
+        message.set(24, functionCode);
+        return message;
+    }
+
+    private static ISOMsg pds(int tag, String value) throws ISOException {
+        final ISOMsg pds = new ISOMsg(48);
+        pds.set(tag, value);
+        return pds;
+    }
+
+}
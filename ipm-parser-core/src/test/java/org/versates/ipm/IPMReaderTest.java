@@ -0,0 +1,81 @@
+package org.versates.ipm;
+
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMBuffer;
+import org.versates.ipm.parser.IPMFileParser;
+import org.versates.ipm.parser.IPMParserException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class IPMReaderTest {
+
+    @Test
+    public void testStreaming() throws Exception {
+        final byte[] bytes = IPMFileFixture.ebcdic(500);
+        final IPMReader reader = new IPMReader(IPMBuffer.of(Channels.newChannel(new ByteArrayInputStream(bytes)), 1024),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+
+        assertThat(reader.header().de(24).value(), is(equalTo("697")));
+        assertThat(reader.footer(), is(nullValue()));
+
+        int count = 0;
+        while (reader.hasNext()) {
+            final ISOTransaction tx = reader.next();
+            assertThat(tx.de(63).number(), is(equalTo((long) ++count)));
+            assertThat(tx.pds(148).value(), is(equalTo("9862")));
+        }
+
+        assertThat(count, is(equalTo(500)));
+        assertThat(reader.footer().de(24).value(), is(equalTo("695")));
+        reader.close();
+    }
+
+    @Test
+    public void testSameTransactionsAsIPMFile() throws Exception {
+        final byte[] bytes = IPMFileFixture.ebcdic(50);
+        final IPMFileParser parser = IPMFileParser.createMasterCardEbcdicFileParser();
+        final IPMFile file = new IPMFile("test.ipm", bytes, parser);
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(bytes), parser);
+
+        for (ISOTransaction tx : file.transactions()) {
+            assertThat(reader.next().xml("\t"), is(equalTo(tx.xml("\t"))));
+        }
+
+        assertThat(reader.hasNext(), is(equalTo(false)));
+        assertThat(file.countTransactions(), is(equalTo(50)));
+    }
+
+    @Test
+    public void testParallelKeepsFileOrder() throws Exception {
+        final IPMFileParser parser = IPMFileParser.createMasterCardEbcdicFileParser();
+        final ForkJoinPool pool = new ForkJoinPool(4);
+
+        try {
+            for (byte[] bytes : Arrays.asList(IPMFileFixture.rdw(10000), IPMFileFixture.blocked(5000),
+                    IPMFileFixture.ebcdic(500))) {
+                final IPMFile sequential = new IPMFile("test.ipm", bytes, parser);
+                final IPMFile parallel = new IPMFile("test.ipm", IPMBuffer.wrap(bytes), parser, pool);
+
+                assertThat(parallel.countTransactions(), is(equalTo(sequential.countTransactions())));
+                assertThat(parallel.xml(), is(equalTo(sequential.xml())));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IPMParserException.class)
+    public void testNoHeader() throws Exception {
+        new IPMReader(new ByteArrayInputStream(new byte[128]), IPMFileParser.createMasterCardEbcdicFileParser()).header();
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.versates.ipm;
+
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMWriterTest {
+
+    private static final int TRANSACTIONS = 300;
+
+    @Test
+    public void testBlocked() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final IPMWriter writer = write(new IPMWriter(out, ISOLayout.MASTERCARD_EBCDIC),
+                IPMFileFixture.messages(TRANSACTIONS));
+
+        assertThat(writer.messages(), is(equalTo(TRANSACTIONS + 2L)));
+        assertThat(out.toByteArray(), is(equalTo(IPMFileFixture.blocked(TRANSACTIONS))));
+        assertThat(writer.bytes(), is(equalTo((long) out.size())));
+        assertThat(out.size() % 1014, is(equalTo(0)));
+    }
+
+    @Test
+    public void testUnblocked() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new IPMWriter(out, ISOLayout.MASTERCARD_EBCDIC, false), IPMFileFixture.messages(TRANSACTIONS));
+
+        assertThat(out.toByteArray(), is(equalTo(IPMFileFixture.rdw(TRANSACTIONS))));
+    }
+
+    @Test
+    public void testPreEdit() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(new IPMWriter(out, ISOLayout.MASTERCARD_ASCII), IPMFileFixture.messages(
+                IPMFileParser.createMasterCardPreEditFileParser().getPackager(), TRANSACTIONS));
+
+        assertThat(out.toByteArray(), is(equalTo(IPMFileFixture.preEdit(TRANSACTIONS))));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final byte[] bytes = IPMFileFixture.blocked(TRANSACTIONS);
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(bytes),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final IPMWriter writer = new IPMWriter(out, ISOLayout.MASTERCARD_EBCDIC);
+
+        writer.write(reader.header()).writeAll(reader).write(reader.footer()).close();
+        reader.close();
+
+        assertThat(out.toByteArray(), is(equalTo(bytes)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testClosed() throws Exception {
+        final IPMWriter writer = new IPMWriter(new ByteArrayOutputStream(), ISOLayout.MASTERCARD_EBCDIC);
+        writer.close();
+        writer.write(new byte[] {1});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGenericLayout() {
+        new IPMWriter(new ByteArrayOutputStream(), ISOLayout.GENERIC);
+    }
+
+    private static IPMWriter write(IPMWriter writer, List<byte[]> messages) throws IOException {
+        for (byte[] message : messages) {
+            writer.write(message);
+        }
+
+        writer.close();
+
+        return writer;
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.versates.ipm.columnar;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.helper.IPMProjection;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class IPMColumnarReaderTest {
+
+    private static final String FIELDS = "DE2,DE4,DE5,DE24,DE26,DE49,PDS0148,DE63";
+
+    @Test
+    public void testColumns() throws Exception {
+        final IPMColumnarReader reader = new IPMColumnarReader(write(300, 64));
+
+        assertThat(reader.rows(), is(equalTo(300)));
+        assertThat(reader.rowGroups(), is(equalTo(5)));
+        assertThat(reader.columns().toString(), is(equalTo("[DE2:STRING, DE4:LONG, DE5:LONG, DE24:DICTIONARY, "
+                + "DE26:DICTIONARY, DE49:DICTIONARY, PDS0148:DICTIONARY, DE63:STRING]")));
+
+        final long[] amounts = reader.longs("DE4");
+        final long[] absent = reader.longs("de5");
+        final String[] cards = reader.strings("DE2");
+        final String[] mcc = reader.strings("DE26");
+        final String[] exponents = reader.strings("PDS0148");
+
+        for (int i = 0; i < 300; i++) {
+            assertThat(amounts[i], is(equalTo((i + 1) * 100L + 99)));
+            assertThat(absent[i], is(equalTo(0L)));
+            assertThat(cards[i], is(equalTo(String.format("550000000000%04d", i + 1))));
+            assertThat(mcc[i], is(equalTo("5411")));
+            assertThat(exponents[i], is(equalTo("9862")));
+        }
+
+        reader.close();
+    }
+
+    @Test
+    public void testReadsOnlyRequestedColumn() throws Exception {
+        final File file = write(1000, 256);
+        final IPMColumnarReader reader = new IPMColumnarReader(file);
+
+        assertThat(reader.strings("DE49")[999], is(equalTo("986")));
+        assertThat(reader.bytesRead() * 20, is(lessThan(file.length())));
+
+        reader.close();
+    }
+
+    @Test
+    public void testAbsentStrings() throws Exception {
+        final File file = File.createTempFile("ipm", ".ipmc");
+        file.deleteOnExit();
+
+        final IPMColumnarWriter writer = new IPMColumnarWriter(new FileOutputStream(file),
+                Arrays.asList(new IPMColumn("PDS0158", IPMColumn.Type.DICTIONARY),
+                        new IPMColumn("DE71", IPMColumn.Type.STRING)), 2);
+        writer.write(new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(3)),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true)));
+        writer.close();
+
+        final IPMColumnarReader reader = new IPMColumnarReader(file);
+
+        assertThat(reader.strings("PDS0158")[2], is(nullValue()));
+        assertThat(reader.strings("DE71")[2], is(equalTo("00000004")));
+
+        reader.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() throws Exception {
+        final IPMColumnarReader reader = new IPMColumnarReader(write(1, 64));
+
+        try {
+            reader.strings("DE4");
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws Exception {
+        final File file = File.createTempFile("ipm", ".ipmc");
+        file.deleteOnExit();
+
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(IPMFileFixture.rdw(1));
+        out.close();
+
+        new IPMColumnarReader(file);
+    }
+
+    private static File write(int transactions, int rowGroup) throws Exception {
+        final File file = File.createTempFile("ipm", ".ipmc");
+        file.deleteOnExit();
+
+        final IPMColumnarWriter writer = new IPMColumnarWriter(new FileOutputStream(file),
+                IPMColumn.of(IPMProjection.parse(FIELDS)), rowGroup);
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(transactions)),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true));
+
+        assertThat(writer.write(reader), is(equalTo(transactions)));
+
+        reader.close();
+        writer.close();
+
+        return file;
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.jpos.iso.ISOMsg;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMAggregatorTest {
+
+    @Test
+    public void testSingleGroup() throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(30)),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true));
+        final IPMAggregator aggregator = new IPMAggregator(IPMProjection.parse("DE24,DE49"),
+                IPMProjection.parse("DE4")).addAll(reader);
+        reader.close();
+
+        assertThat(aggregator.groups(), is(equalTo(1)));
+        assertThat(aggregator.transactions(), is(equalTo(30L)));
+        assertThat(aggregator.key(0, 0), is(equalTo("200")));
+        assertThat(aggregator.key(0, 1), is(equalTo("986")));
+        assertThat(aggregator.count(0), is(equalTo(30L)));
+        assertThat(aggregator.sum(0, 0), is(equalTo(49470L)));
+    }
+
+    @Test
+    public void testSummary() throws Exception {
+        final IPMAggregator aggregator = new IPMAggregator(IPMProjection.parse("DE0,DE24,DE26"),
+                IPMProjection.parse("DE4,DE5"));
+
+        for (int i = 0; i < 500; i++) {
+            aggregator.add(transaction(i % 2 == 0 ? "1240" : "1442", i % 2 == 0 ? "200" : "450",
+                    (i % 5 == 0) ? null : String.valueOf(5411 + (i % 3)), i));
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        aggregator.write(output, IPMDelimitedWriter.TSV);
+
+        final String[] rows = output.toString("UTF-8").split("\n");
+
+        assertThat(aggregator.groups(), is(equalTo(8)));
+        assertThat(rows.length, is(equalTo(9)));
+        assertThat(rows[0], is(equalTo("DE0\tDE24\tDE26\tCOUNT\tSUM_DE4\tSUM_DE5")));
+        assertThat(rows[1], is(equalTo("1240\t200\t\t50\t12250\t0")));
+        assertThat(rows[2].startsWith("1240\t200\t5411\t"), is(true));
+        assertThat(rows[8].startsWith("1442\t450\t5413\t"), is(true));
+    }
+
+    @Test
+    public void testCountOnly() throws Exception {
+        final IPMAggregator aggregator = new IPMAggregator(null, null);
+
+        for (int i = 0; i < 10; i++) {
+            aggregator.add(transaction("1240", "200", "5411", i));
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        aggregator.write(output, IPMDelimitedWriter.CSV);
+
+        assertThat(output.toString("UTF-8"), is(equalTo("COUNT\n10\n")));
+    }
+
+    @Test
+    public void testDelimitedKeys() throws Exception {
+        final IPMAggregator aggregator = new IPMAggregator(IPMProjection.parse("DE43"), null);
+        aggregator.add(merchant("LOJA A, \"CENTRO\"\\SAO PAULO"));
+        aggregator.add(merchant("MERCADO\tB\nSUL"));
+
+        final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        final ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+        aggregator.write(csv, IPMDelimitedWriter.CSV);
+        aggregator.write(tsv, IPMDelimitedWriter.TSV);
+
+        assertThat(csv.toString("UTF-8"), is(equalTo("DE43,COUNT\n\"LOJA A, \"\"CENTRO\"\"\\SAO PAULO\",1\n"
+                + "\"MERCADO\tB\nSUL\",1\n")));
+        assertThat(tsv.toString("UTF-8"), is(equalTo("DE43\tCOUNT\nLOJA A, \"CENTRO\"\\SAO PAULO\t1\n"
+                + "MERCADO B SUL\t1\n")));
+    }
+
+    private static ISOTransaction merchant(String name) throws Exception {
+        final ISOMessage message = new ISOMessage();
+        message.setMTI("1240");
+        message.set(43, name);
+        return new ISOTransaction(message);
+    }
+
+    private static ISOTransaction transaction(String mti, String functionCode, String mcc, int amount)
+            throws Exception {
+        final ISOMessage message = new ISOMessage();
+        message.setMTI(mti);
+        message.set(4, String.format("%012d", amount));
+        message.set(24, functionCode);
+        message.set(new ISOMsg(48));
+
+        if (mcc != null) {
+            message.set(26, mcc);
+        }
+
+        return new ISOTransaction(message);
+    }
+
+}
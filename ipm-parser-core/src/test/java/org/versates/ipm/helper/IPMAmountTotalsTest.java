@@ -0,0 +1,50 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMAmountTotalsTest {
+
+    @Test
+    public void testTotalsByCurrency() throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(100)),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+        final IPMAmountTotals totals = new IPMAmountTotals(4).addAll(reader);
+        reader.close();
+
+        assertThat(totals.currencies(), is(equalTo(new int[] {986})));
+        assertThat(totals.count(986), is(equalTo(100)));
+        assertThat(totals.minorUnits(986), is(equalTo(514900L)));
+        assertThat(totals.exponent(986), is(equalTo(2)));
+        assertThat(totals.total(986), is(equalTo(new BigDecimal("5149.00"))));
+    }
+
+    @Test
+    public void testTransactionAmount() throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(3)),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+        final ISOTransaction transaction = reader.next();
+        reader.close();
+
+        assertThat(transaction.minorUnits(4), is(equalTo(199L)));
+        assertThat(transaction.exponent(4), is(equalTo(2)));
+        assertThat(transaction.exponent(5), is(equalTo(-1)));
+        assertThat(transaction.amount(4), is(equalTo(new BigDecimal("1.99"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidAmount() {
+        new IPMAmountTotals(7);
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMBatchTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testFiles() throws Exception {
+        final File input = folder.newFolder("input");
+        write(new File(input, "b.ipm"), IPMFileFixture.rdw(1));
+        write(new File(input, "a.ipm"), IPMFileFixture.rdw(1));
+        write(new File(input, "c.txt"), new byte[] {1});
+
+        assertThat(IPMBatch.files(input.getPath()).size(), is(equalTo(3)));
+        assertThat(IPMBatch.files(new File(input, "*.ipm").getPath()).toString(), is(equalTo("["
+                + new File(input, "a.ipm") + ", " + new File(input, "b.ipm") + "]")));
+        assertThat(IPMBatch.files(new File(input, "c.txt").getPath()).size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testConcurrentConversions() throws Exception {
+        final File input = folder.newFolder("input");
+        final File output = new File(folder.getRoot(), "output");
+
+        for (int i = 1; i <= 6; i++) {
+            write(new File(input, "file" + i + ".ipm"), IPMFileFixture.rdw(i * 50));
+        }
+
+        write(new File(input, "file7.ipm"), new byte[] {1, 2, 3});
+
+        final List<IPMBatch.Result> results = new IPMBatch(IPMBatch.xml(ISOLayout.MASTERCARD_EBCDIC), output, 3)
+                .run(IPMBatch.files(input.getPath()));
+
+        assertThat(results.size(), is(equalTo(7)));
+
+        for (int i = 0; i < 6; i++) {
+            final IPMBatch.Result result = results.get(i);
+            final String xml = new String(Files.readAllBytes(result.output().toPath()), Charset.defaultCharset());
+
+            assertThat(result.isConverted(), is(true));
+            assertThat(result.transactions(), is(equalTo((i + 1) * 50L)));
+            assertThat(xml, is(equalTo(XMLConversor.xml(result.file().getPath(), ISOLayout.MASTERCARD_EBCDIC))));
+        }
+
+        assertThat(results.get(6).isConverted(), is(false));
+        assertThat(new File(output, "file7.ipm.xml").exists(), is(false));
+
+        final ByteArrayOutputStream report = new ByteArrayOutputStream();
+        IPMBatch.report(results, 1000000, new PrintStream(report, true, "UTF-8"));
+
+        assertThat(report.toString("UTF-8"), containsString("FAILED 1\t7 files\t1050\t"));
+    }
+
+    @Test
+    public void testSummaries() throws Exception {
+        final File input = folder.newFolder("input");
+        final File output = new File(folder.getRoot(), "output");
+        write(new File(input, "file.ipm"), IPMFileFixture.rdw(30));
+
+        final List<IPMBatch.Result> results = new IPMBatch(IPMBatch.summary(ISOLayout.MASTERCARD_EBCDIC,
+                IPMProjection.parse("DE49"), IPMProjection.parse("DE4"), IPMDelimitedWriter.CSV), output, 2)
+                .run(IPMBatch.files(input.getPath()));
+
+        assertThat(results.get(0).output().getName(), is(equalTo("file.ipm.csv")));
+        assertThat(new String(Files.readAllBytes(results.get(0).output().toPath()), "UTF-8"),
+                is(equalTo("DE49,COUNT,SUM_DE4\n986,30,49470\n")));
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        final File input = folder.newFolder("input");
+        final File output = new File(folder.getRoot(), "output");
+        write(new File(input, "file.ipm"), IPMFileFixture.rdw(100));
+
+        final IPMBatch.Result result = new IPMBatch(IPMBatch.delimited(ISOLayout.MASTERCARD_EBCDIC,
+                IPMProjection.parse("DE2"), IPMDelimitedWriter.TSV), output, 1, true)
+                .run(IPMBatch.files(input.getPath())).get(0);
+        final InputStream in = new GZIPInputStream(new FileInputStream(result.output()));
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[4096];
+
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+
+        in.close();
+
+        final String tsv = bytes.toString("UTF-8");
+
+        assertThat(result.output().getName(), is(equalTo("file.ipm.tsv.gz")));
+        assertThat(tsv.split("\n").length, is(equalTo(101)));
+        assertThat(tsv.split("\n")[100], is(equalTo("5500000000000100")));
+    }
+
+    private static void write(File file, byte[] bytes) throws Exception {
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+    }
+
+}
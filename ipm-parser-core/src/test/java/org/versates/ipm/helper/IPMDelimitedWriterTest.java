@@ -0,0 +1,92 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.jpos.iso.ISOMsg;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMDelimitedWriterTest {
+
+    @Test
+    public void testCsvRows() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.rdw(2)),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true));
+        final int rows = new IPMDelimitedWriter(output, IPMProjection.parse("DE2,de4, DE49,PDS0148,PDS158,DE5"),
+                IPMDelimitedWriter.CSV).write(reader);
+        reader.close();
+
+        assertThat(rows, is(equalTo(2)));
+        assertThat(output.toString("UTF-8"), is(equalTo("DE2,DE4,DE49,PDS0148,PDS0158,DE5\n"
+                + "5500000000000001,000000000199,986,9862,,\n"
+                + "5500000000000002,000000000299,986,9862,,\n")));
+    }
+
+    @Test
+    public void testSameRowsAsEagerParser() throws Exception {
+        final byte[] bytes = IPMFileFixture.ebcdic(300);
+        final IPMProjection fields = IPMProjection.parse("DE0,DE2,DE3,DE4,DE12,DE24,DE26,PDS0148,DE49,DE63,DE71");
+        final ByteArrayOutputStream lazy = new ByteArrayOutputStream();
+        final ByteArrayOutputStream eager = new ByteArrayOutputStream();
+
+        new IPMDelimitedWriter(lazy, fields, IPMDelimitedWriter.TSV).write(new IPMReader(new ByteArrayInputStream(bytes),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true)));
+        new IPMDelimitedWriter(eager, fields, IPMDelimitedWriter.TSV).write(new IPMReader(
+                new ByteArrayInputStream(bytes), IPMFileParser.createMasterCardEbcdicFileParser()));
+
+        assertThat(lazy.toString("UTF-8"), is(equalTo(eager.toString("UTF-8"))));
+        assertThat(lazy.toString("UTF-8").split("\n")[1], is(equalTo(
+                "1240\t5500000000000001\t000000\t000000000199\t141020123456\t200\t5411\t9862\t986\t0000000000000001"
+                        + "\t00000002")));
+    }
+
+    @Test
+    public void testEscaping() throws Exception {
+        final ISOMessage message = new ISOMessage();
+        message.set(2, "a,b");
+        message.set(3, "say \"hi\"");
+        message.set(4, "tab\there");
+        message.set(5, "A\u00C7\u00C3O");
+        message.set(new ISOMsg(48));
+
+        final IPMProjection fields = IPMProjection.parse("DE2,DE3,DE4,DE5");
+        final ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        final ByteArrayOutputStream tsv = new ByteArrayOutputStream();
+        final IPMDelimitedWriter csvWriter = new IPMDelimitedWriter(csv, fields, IPMDelimitedWriter.CSV);
+        final IPMDelimitedWriter tsvWriter = new IPMDelimitedWriter(tsv, fields, IPMDelimitedWriter.TSV);
+
+        csvWriter.write(new ISOTransaction(message));
+        csvWriter.flush();
+        tsvWriter.write(new ISOTransaction(message));
+        tsvWriter.flush();
+
+        assertThat(csv.toString("UTF-8"), is(equalTo("\"a,b\",\"say \"\"hi\"\"\",tab\there,A\u00C7\u00C3O\n")));
+        assertThat(tsv.toString("UTF-8"), is(equalTo("a,b\tsay \"hi\"\ttab here\tA\u00C7\u00C3O\n")));
+    }
+
+    @Test
+    public void testProjection() {
+        assertThat(IPMProjection.parse(" de2 ,PDS148,pds0001,DE128").toString(),
+                is(equalTo("DE2,PDS0148,PDS0001,DE128")));
+
+        for (String invalid : new String[] {"", "DE", "DE129", "PDS10000", "XX2", "DE2,,", "DEa", "PDS-1"}) {
+            try {
+                IPMProjection.parse(invalid);
+                assertThat(invalid, false, is(true));
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.IPMWriter;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertThat;
+
+public class IPMGeneratorTest {
+
+    private static final int TRANSACTIONS = 2000;
+
+    @Test
+    public void testEbcdicFile() throws Exception {
+        assertValidFile(generate(new IPMGenerator(42), ISOLayout.MASTERCARD_EBCDIC),
+                IPMFileParser.createMasterCardEbcdicFileParser());
+    }
+
+    @Test
+    public void testPreEditFile() throws Exception {
+        assertValidFile(generate(new IPMGenerator(42), ISOLayout.MASTERCARD_ASCII),
+                IPMFileParser.createMasterCardPreEditFileParser());
+    }
+
+    @Test
+    public void testSeed() throws Exception {
+        final byte[] bytes = generate(new IPMGenerator(7), ISOLayout.MASTERCARD_EBCDIC);
+
+        assertThat(generate(new IPMGenerator(7), ISOLayout.MASTERCARD_EBCDIC), is(equalTo(bytes)));
+        assertThat(generate(new IPMGenerator(8), ISOLayout.MASTERCARD_EBCDIC), is(not(equalTo(bytes))));
+    }
+
+    @Test
+    public void testMix() throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(generate(new IPMGenerator(1, 0, 1, 0),
+                ISOLayout.MASTERCARD_EBCDIC)), IPMFileParser.createMasterCardEbcdicFileParser());
+
+        while (reader.hasNext()) {
+            final ISOTransaction transaction = reader.next();
+            assertThat(transaction.mti(), is(equalTo("1442")));
+            assertThat(transaction.de(24).value(), is(equalTo("450")));
+        }
+
+        reader.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMix() {
+        new IPMGenerator(1, 0, 0, 0);
+    }
+
+    private static byte[] generate(IPMGenerator generator, ISOLayout layout) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final IPMWriter writer = new IPMWriter(out, layout);
+
+        assertThat(generator.write(writer, TRANSACTIONS), is(equalTo(TRANSACTIONS + 2L)));
+        writer.close();
+
+        return out.toByteArray();
+    }
+
+    private static void assertValidFile(byte[] bytes, IPMFileParser parser) throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(bytes), parser);
+        final Map<String, Integer> mtis = new HashMap<String, Integer>();
+        long checksum = 0;
+        long number = 1;
+
+        assertThat(reader.header().de(24).value(), is(equalTo("697")));
+        assertThat(reader.header().pds(105).value().length(), is(equalTo(25)));
+
+        while (reader.hasNext()) {
+            final ISOTransaction transaction = reader.next();
+            final Integer count = mtis.get(transaction.mti());
+
+            assertThat(transaction.isCorrupted(), is(false));
+            assertThat(transaction.de(71).number(), is(equalTo(++number)));
+            mtis.put(transaction.mti(), (count == null) ? 1 : count + 1);
+            checksum += transaction.de(4).number();
+        }
+
+        reader.close();
+
+        assertThat(count(mtis), is(equalTo(TRANSACTIONS)));
+        assertThat(mtis.get("1240"), is(greaterThan(TRANSACTIONS * 85 / 100)));
+        assertThat(mtis.get("1442"), is(lessThan(TRANSACTIONS * 12 / 100)));
+        assertThat(mtis.get("1740"), is(greaterThan(0)));
+        assertThat(reader.footer().de(24).value(), is(equalTo("695")));
+        assertThat(reader.footer().pds(306).value(), is(equalTo(String.format("%08d", TRANSACTIONS + 2))));
+        assertThat(reader.footer().pds(301).number(), is(equalTo(checksum)));
+    }
+
+    private static int count(Map<String, Integer> mtis) {
+        int count = 0;
+
+        for (Integer value : mtis.values()) {
+            count += value;
+        }
+
+        return count;
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.versates.ipm.helper;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMXmlWriterTest {
+
+    @Test
+    public void testSameDocumentAsIPMFile() throws Exception {
+        final byte[] bytes = IPMFileFixture.ebcdic(1200);
+        final IPMFileParser parser = IPMFileParser.createMasterCardEbcdicFileParser();
+        final StringWriter output = new StringWriter();
+
+        new IPMXmlWriter(output).write("test.ipm", 1200, new IPMReader(new ByteArrayInputStream(bytes), parser));
+
+        final String xml = new IPMFile("test.ipm", bytes, parser).xml();
+        assertThat(output.toString(), is(equalTo(xml)));
+        assertThat(xml, containsString("<ipm-file name=\"test.ipm\" messages=\"1,200\">\n\t<header>"));
+        assertThat(xml, containsString("\n\t\t<de id=\"48\">\n\t\t\t<pds id=\"148\">9862</pds>\n\t\t</de>"));
+        assertThat(xml, containsString("\n\t\t<de id=\"63\">0000000000001200</de>"));
+        assertThat(xml.endsWith("</footer>\n</ipm-file>"), is(equalTo(true)));
+    }
+
+    @Test
+    public void testConversorWritesSameDocument() throws Exception {
+        final File file = File.createTempFile("ipm", ".ipm");
+        file.deleteOnExit();
+
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(IPMFileFixture.rdw(100));
+        out.close();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLConversor.write(file.getPath(), ISOLayout.MASTERCARD_EBCDIC, output);
+
+        assertThat(new String(output.toByteArray(), Charset.defaultCharset()),
+                is(equalTo(XMLConversor.xml(file.getPath(), ISOLayout.MASTERCARD_EBCDIC))));
+    }
+
+    @Test
+    public void testConversorWritesErrorDocument() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        XMLConversor.write("missing.ipm", ISOLayout.MASTERCARD_EBCDIC, output);
+
+        assertThat(new String(output.toByteArray(), Charset.defaultCharset()),
+                containsString("<error>Error on processing IPM file missing.ipm.</error>"));
+    }
+
+}
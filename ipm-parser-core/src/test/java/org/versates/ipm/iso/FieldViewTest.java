@@ -0,0 +1,60 @@
+package org.versates.ipm.iso;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class FieldViewTest {
+
+    @Test
+    public void testSameNumbersAsISODe() {
+        final FieldView view = new FieldView();
+        final String[] values = {"", "0", "000000000299", "-15", "+15", "-", "+", "12a", " 1", "1.5",
+                "9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+                "99999999999999999999"};
+
+        for (String value : values) {
+            assertThat(value, view.set(1, value, false).asLong(), is(equalTo(new ISODe(1, value).number())));
+        }
+    }
+
+    @Test
+    public void testIntRange() {
+        final FieldView view = new FieldView();
+
+        assertThat(view.set(1, "2147483647", false).asInt(), is(equalTo(Integer.MAX_VALUE)));
+        assertThat(view.set(1, "-2147483648", false).asInt(), is(equalTo(Integer.MIN_VALUE)));
+        assertThat(view.set(1, "2147483648", false).asInt(), is(equalTo(0)));
+        assertThat(view.set(1, "00000986", false).asInt(), is(equalTo(986)));
+    }
+
+    @Test
+    public void testReusedAcrossTransactions() throws Exception {
+        final List<ISOMessage> messages = IPMFileParser.createMasterCardEbcdicFileParser()
+                .parse(IPMFileFixture.rdw(20));
+        final FieldView view = new FieldView();
+
+        for (int i = 1; i <= 20; i++) {
+            final ISOTransaction transaction = new ISOTransaction(messages.get(i));
+
+            assertThat(transaction.de(63, view), is(sameInstance(view)));
+            assertThat(view.asLong(), is(equalTo((long) i)));
+            assertThat(view.isPds(), is(false));
+            assertThat(transaction.de(4, view).toString(), is(equalTo(transaction.de(4).value())));
+            assertThat(transaction.pds(148, view).asInt(), is(equalTo(9862)));
+            assertThat(view.isPds(), is(true));
+            assertThat(view.charAt(0), is(equalTo('9')));
+            assertThat(transaction.pds(146, view).isEmpty(), is(true));
+            assertThat(transaction.de(5, view).isEmpty(), is(true));
+            assertThat(view.index(), is(equalTo(5)));
+        }
+    }
+
+}
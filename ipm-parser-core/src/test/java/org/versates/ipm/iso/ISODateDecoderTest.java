@@ -0,0 +1,80 @@
+package org.versates.ipm.iso;
+
+import org.jpos.iso.ISOException;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ISODateDecoderTest {
+
+    @Test
+    public void testEveryDayOfTheCentury() throws Exception {
+        for (LocalDate date = LocalDate.of(2000, 1, 1); date.getYear() < 2100; date = date.plusDays(1)) {
+            final String value = String.format("%02d%02d%02d", date.getYear() % 100, date.getMonthValue(),
+                    date.getDayOfMonth());
+
+            assertThat(value, ISODateDecoder.epochDay(value), is(equalTo(date.toEpochDay())));
+            assertThat(ISODateDecoder.localDate(value), is(equalTo(date)));
+        }
+    }
+
+    @Test
+    public void testDateTime() throws Exception {
+        final LocalDateTime expected = LocalDateTime.of(2014, 10, 20, 12, 34, 56);
+
+        assertThat(ISODateDecoder.localDateTime("141020123456"), is(equalTo(expected)));
+        assertThat(ISODateDecoder.epochSecond("141020123456"), is(equalTo(expected.toEpochSecond(ZoneOffset.UTC))));
+        assertThat(ISODateDecoder.localTime("235959"), is(equalTo(LocalTime.of(23, 59, 59))));
+        assertThat(new ISODe(12, "141020123456").localDateTime(), is(equalTo(expected)));
+        assertThat(new ISODe(73, "").localDate(), is(nullValue()));
+    }
+
+    @Test
+    public void testInvalidValues() {
+        for (String value : new String[] {"", "14102", "1410200", "141320", "140229", "141000", "14 020", "14-020"}) {
+            assertInvalidDate(value);
+        }
+
+        assertThat(isValidDate("160229"), is(true));
+        assertInvalidTime("240000");
+        assertInvalidTime("126000");
+        assertInvalidTime("12345");
+    }
+
+    private boolean isValidDate(String value) {
+        try {
+            ISODateDecoder.localDate(value);
+            return true;
+        } catch (ISOException e) {
+            return false;
+        }
+    }
+
+    private void assertInvalidDate(String value) {
+        try {
+            ISODateDecoder.localDate(value);
+            fail(value);
+        } catch (ISOException e) {
+            assertThat(e.getMessage(), is(equalTo("ipmparser.transaction.field.invaliddate")));
+        }
+    }
+
+    private void assertInvalidTime(String value) {
+        try {
+            ISODateDecoder.localTime(value);
+            fail(value);
+        } catch (ISOException e) {
+            assertThat(e.getMessage(), is(equalTo("ipmparser.transaction.field.invaliddate")));
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.versates.ipm.iso;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ISODeTest {
+
+    @Test
+    public void testExactCurrency() {
+        assertThat(new ISODe(4, "999999999999").currency(2), is(equalTo(new BigDecimal("9999999999.99"))));
+        assertThat(new ISODe(4, "123456789012").currency(3), is(equalTo(new BigDecimal("123456789.012"))));
+        assertThat(new ISODe(4, "000000000299").currency("2"), is(equalTo(new BigDecimal("2.99"))));
+        assertThat(new ISODe(4, "000000000000").currency(2), is(equalTo(new BigDecimal("0.00"))));
+        assertThat(new ISODe(4, "").currency(2), is(equalTo(new BigDecimal("0.00"))));
+        assertThat(new ISODe(4, "150").currency((Integer) null), is(equalTo(new BigDecimal("150"))));
+        assertThat(new ISODe(4, "150").currency(new ISODe(-1, "1")), is(equalTo(new BigDecimal("15.0"))));
+        assertThat(new ISODe(4, "1.5").currency(1), is(equalTo(new BigDecimal("0.2"))));
+    }
+
+    @Test
+    public void testMinorUnits() {
+        assertThat(new ISODe(4, "000000010099").minorUnits(), is(equalTo(10099L)));
+        assertThat(new ISODe(4, "").minorUnits(), is(equalTo(0L)));
+        assertThat(new ISODe(4, "ABC").minorUnits(), is(equalTo(0L)));
+        assertThat(new ISODe(4, "000000010099").number(), is(equalTo(10099L)));
+    }
+
+}
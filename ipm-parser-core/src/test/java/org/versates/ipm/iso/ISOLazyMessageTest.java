@@ -0,0 +1,64 @@
+package org.versates.ipm.iso;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ISOLazyMessageTest {
+
+    @Test
+    public void testSameXmlAsEagerParser() throws Exception {
+        final byte[][] files = {IPMFileFixture.ebcdic(200), IPMFileFixture.rdw(200), IPMFileFixture.preEdit(200)};
+        final ISOLayout[] layouts = {ISOLayout.MASTERCARD_EBCDIC, ISOLayout.MASTERCARD_EBCDIC,
+                ISOLayout.MASTERCARD_ASCII};
+
+        for (int i = 0; i < files.length; i++) {
+            final IPMFile eager = new IPMFile("test.ipm", files[i], IPMFileParser.createFileParser(layouts[i]));
+            final IPMFile lazy = new IPMFile("test.ipm", files[i], IPMFileParser.createFileParser(layouts[i], true));
+
+            assertThat(lazy.countTransactions(), is(equalTo(eager.countTransactions())));
+            assertThat(lazy.xml(), is(equalTo(eager.xml())));
+        }
+    }
+
+    @Test
+    public void testDecodesOnlyAccessedFields() throws Exception {
+        final IPMFileParser parser = IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true);
+        final List<ISOMessage> messages = parser.parse(IPMFileFixture.rdw(3));
+        final ISOLazyMessage message = (ISOLazyMessage) messages.get(2);
+        final ISOTransaction transaction = new ISOTransaction(message);
+
+        assertThat(parser.isLazy(), is(true));
+        assertThat(message.isDecoded(4), is(false));
+        assertThat(message.isDecoded(48), is(false));
+
+        assertThat(transaction.de(4).value(), is(equalTo("000000000299")));
+        assertThat(transaction.pds(148).value(), is(equalTo("9862")));
+
+        assertThat(message.isDecoded(4), is(true));
+        assertThat(message.isDecoded(48), is(true));
+        assertThat(message.isDecoded(2), is(false));
+        assertThat(message.isDecoded(63), is(false));
+        assertThat(transaction.hasDe(63), is(true));
+        assertThat(transaction.isPds(), is(false));
+    }
+
+    @Test
+    public void testPackDecodesAllFields() throws Exception {
+        final IPMFileParser parser = IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, true);
+        final ISOLazyMessage message = (ISOLazyMessage) parser.parse(IPMFileFixture.rdw(1)).get(1);
+        final byte[] expected = IPMFileFixture.transaction(parser.getPackager(), 1).pack();
+
+        assertThat(message.pack(), is(equalTo(expected)));
+        assertThat(message.isDecoded(63), is(true));
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.versates.ipm.iso;
+
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.versates.ipm.iso.packager.ISOPackagerRegistry;
+import org.jpos.iso.ISOMsg;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ISOTransactionTest {
+
+    @Test
+    public void testPdsLookup() throws Exception {
+        final ISOTransaction transaction = transaction(148, "9862", 158, "MCC1234567A", 165, "M", 1001, "X");
+
+        assertThat(transaction.hasPds(148), is(true));
+        assertThat(transaction.hasPds(146), is(false));
+        assertThat(transaction.pds(148).value(), is(equalTo("9862")));
+        assertThat(transaction.pds(158).value(), is(equalTo("MCC1234567A")));
+        assertThat(transaction.pds(165).flag(), is(equalTo('M')));
+        assertThat(transaction.pds(1001).value(), is(equalTo("X")));
+        assertThat(transaction.pds(165), is(sameInstance(transaction.pds(165))));
+        assertThat(transaction.pds(165).belongsToPds(), is(true));
+        assertThat(transaction.pds(146).empty(), is(true));
+        assertThat(transaction.pds(146).belongsToPds(), is(true));
+        assertThat(transaction.isPds(), is(false));
+    }
+
+    @Test
+    public void testPdsXmlInTagOrder() throws Exception {
+        final ISOTransaction transaction = transaction(1001, "X", 165, "M", 148, "9862");
+
+        assertThat(transaction.xml("\t"), is(equalTo("\t<message>\n\t\t<mti>1240</mti>\n\t\t<de id=\"48\">\n"
+                + "\t\t\t<pds id=\"148\">9862</pds>\n\t\t\t<pds id=\"165\">M</pds>\n"
+                + "\t\t\t<pds id=\"1,001\">X</pds>\n\t\t</de>\n\t</message>")));
+    }
+
+    @Test
+    public void testWithoutPrivateData() throws Exception {
+        final ISOMessage message = new ISOMessage();
+        message.setMTI("1240");
+        final ISOTransaction transaction = new ISOTransaction(message);
+
+        assertThat(transaction.hasPds(148), is(false));
+        assertThat(transaction.pds(148).empty(), is(true));
+        assertThat(transaction.pds(148).belongsToPds(), is(false));
+    }
+
+    private ISOTransaction transaction(Object... pds) throws Exception {
+        final ISOMessage message = new ISOMessage();
+        final ISOMsg privateData = new ISOMsg(48);
+
+        message.setPackager(ISOPackagerRegistry.getPackager(ISOLayout.MASTERCARD_EBCDIC));
+        message.setMTI("1240");
+
+        for (int i = 0; i < pds.length; i += 2) {
+            privateData.set((Integer) pds[i], (String) pds[i + 1]);
+        }
+
+        message.set(privateData);
+
+        return new ISOTransaction(message);
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.versates.ipm.iso.packager;
+
+import org.versates.ipm.IPMFileFixture;
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOFieldPackager;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.packager.GenericPackager;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ISOLayoutCompilerTest {
+
+    private static final int SAMPLES = 500;
+
+    @Test
+    public void testSameMessagesAsGenericPackager() throws Exception {
+        for (ISOLayout layout : new ISOLayout[] {ISOLayout.MASTERCARD_EBCDIC, ISOLayout.MASTERCARD_ASCII}) {
+            final ISOLayoutPackager compiled = ISOPackagerRegistry.getPackager(layout);
+            final GenericPackager generic = new GenericPackager(getClass().getClassLoader()
+                    .getResourceAsStream(layout.getConfigurationPath()));
+
+            for (byte[] bytes : IPMFileFixture.messages(compiled, 100)) {
+                final ISOMsg expected = new ISOMsg();
+                final ISOMsg actual = new ISOMsg();
+
+                assertThat(compiled.unpack(actual, bytes, 0, bytes.length), is(equalTo(generic.unpack(expected, bytes))));
+                assertThat(dump(actual), is(equalTo(dump(expected))));
+            }
+        }
+    }
+
+    @Test
+    public void testSameFieldsAsFieldPackagersOnRandomBytes() throws Exception {
+        final Random random = new Random(8583);
+
+        for (ISOLayout layout : new ISOLayout[] {ISOLayout.MASTERCARD_EBCDIC, ISOLayout.MASTERCARD_ASCII}) {
+            final ISOLayoutPackager packager = ISOPackagerRegistry.getPackager(layout);
+            final byte[] digits = "0123456789".getBytes(layout.getCharset());
+            final ISOFieldPackager[] fields = new ISOFieldPackager[129];
+
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = packager.getFieldPackager(i);
+            }
+
+            final ISOFieldDecoder[] decoders = ISOLayoutCompiler.compile(fields);
+            assertThat(decoders[2].getClass() == ISOFieldDecoder.class, is(false));
+
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] == null || i == 1) {
+                    continue;
+                }
+
+                final ISOFieldDecoder generic = new ISOFieldDecoder(i, fields[i]);
+                final ISOFieldDecoder compiled = decoders[i];
+
+                for (int sample = 0; sample < SAMPLES; sample++) {
+                    final byte[] bytes = new byte[random.nextInt(64)];
+                    random.nextBytes(bytes);
+
+                    for (int j = 0; j < bytes.length && random.nextBoolean(); j++) {
+                        bytes[j] = digits[random.nextInt(digits.length)];
+                    }
+
+                    final int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+                    assertThat(decode(compiled, i, bytes, offset), is(equalTo(decode(generic, i, bytes, offset))));
+                }
+            }
+        }
+    }
+
+    private static String decode(ISOFieldDecoder decoder, int index, byte[] bytes, int offset) {
+        final ISOMsg message = new ISOMsg();
+
+        try {
+            final int consumed = decoder.decode(message, bytes, offset);
+            return consumed + ":" + dump(message);
+        } catch (ISOException e) {
+            return "error:" + e.getMessage() + ":" + (e.getNested() == null ? "" : e.getNested().getClass());
+        } catch (RuntimeException e) {
+            return "runtime:" + e.getClass();
+        }
+    }
+
+    private static String dump(ISOMsg message) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        message.dump(new PrintStream(out), "");
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.versates.ipm.iso.packager;
+
+import org.versates.ipm.parser.IPMFileParser;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ISOPackagerRegistryTest {
+
+    @Test
+    public void testPackagerBuiltOncePerLayout() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(IPMFileParser.createMasterCardEbcdicFileParser().getPackager(),
+                    is(sameInstance((Object) ISOPackagerRegistry.getPackager(ISOLayout.MASTERCARD_EBCDIC))));
+            IPMFileParser.createMasterCardPreEditFileParser();
+        }
+
+        assertThat(ISOPackagerRegistry.built(ISOLayout.MASTERCARD_EBCDIC), is(equalTo(1)));
+        assertThat(ISOPackagerRegistry.built(ISOLayout.MASTERCARD_ASCII), is(equalTo(1)));
+        assertThat(ISOPackagerRegistry.built(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testConfigurationPath() {
+        assertThat(ISOLayout.MASTERCARD_EBCDIC.getConfigurationPath(),
+                is(equalTo("org/versates/ipm/iso/packager/mastercard-ebcdic.xml")));
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.versates.ipm.iso.packager;
+
+import org.jpos.iso.ISOException;
+import org.jpos.iso.ISOMsg;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MasterCardSubfieldPackagerTest {
+
+    private static final String PDS = "00230030010105025002140915000000000000000101480049862015800803000ABC";
+
+    @Test
+    public void testUnpackAscii() throws Exception {
+        assertUnpack(new MasterCardASCIISubfieldPackager(), PDS.getBytes());
+    }
+
+    @Test
+    public void testUnpackEbcdic() throws Exception {
+        assertUnpack(new MasterCardEBCDICSubfieldPackager(), PDS.getBytes(ISOLayout.MASTERCARD_EBCDIC.getCharset()));
+    }
+
+    @Test
+    public void testUnpackRange() throws Exception {
+        final byte[] bytes = ("XX" + PDS + "0159006A\u00C7\u00C3O-1XX")
+                .getBytes(ISOLayout.MASTERCARD_EBCDIC.getCharset());
+        final ISOMsg message = new ISOMsg(48);
+
+        assertThat(new MasterCardEBCDICSubfieldPackager().unpack(message, bytes, 2, bytes.length - 4),
+                is(equalTo(bytes.length - 4)));
+        assertThat(message.getString(158), is(equalTo("03000ABC")));
+        assertThat(message.getString(159), is(equalTo("A\u00C7\u00C3O-1")));
+    }
+
+    @Test(expected = ISOException.class)
+    public void testInvalidTag() throws Exception {
+        new MasterCardASCIISubfieldPackager().unpack(new ISOMsg(48), "01A5003abc".getBytes());
+    }
+
+    @Test(expected = ISOException.class)
+    public void testValueBeyondBuffer() throws Exception {
+        new MasterCardEBCDICSubfieldPackager().unpack(new ISOMsg(48),
+                "0105009abc".getBytes(ISOLayout.MASTERCARD_EBCDIC.getCharset()));
+    }
+
+    @Test(expected = ISOException.class)
+    public void testTruncatedTag() throws Exception {
+        new MasterCardASCIISubfieldPackager().unpack(new ISOMsg(48), "0105003abc01".getBytes());
+    }
+
+    private void assertUnpack(MasterCardSubfieldPackager packager, byte[] bytes) throws ISOException {
+        final ISOMsg message = new ISOMsg(48);
+
+        assertThat(packager.unpack(message, bytes), is(equalTo(bytes.length)));
+        assertThat(message.getString(105), is(equalTo("0021409150000000000000001")));
+        assertThat(message.getString(23), is(equalTo("001")));
+        assertThat(message.getString(148), is(equalTo("9862")));
+        assertThat(message.getString(158), is(equalTo("03000ABC")));
+        assertThat(packager.pack(message), is(equalTo(bytes)));
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.versates.ipm.parser;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class IPMFileParserConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int FILES = 160;
+
+    @Test
+    public void testSharedInstance() {
+        assertThat(IPMFileParser.getFileParser(ISOLayout.MASTERCARD_EBCDIC),
+                is(sameInstance(IPMFileParser.getFileParser(ISOLayout.MASTERCARD_EBCDIC))));
+    }
+
+    @Test
+    public void testConcurrentParsesWithSharedParser() throws Exception {
+        final List<byte[]> files = new ArrayList<byte[]>();
+        final List<String> expected = new ArrayList<String>();
+
+        for (int i = 0; i < FILES; i++) {
+            final byte[] bytes = file(i);
+            files.add(bytes);
+            expected.add(new IPMFile("test.ipm", bytes, IPMFileParser.createFileParser(layout(i))).xml());
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        try {
+            final List<Future<String>> results = new ArrayList<Future<String>>();
+
+            for (int i = 0; i < FILES; i++) {
+                final byte[] bytes = files.get(i);
+                final IPMFileParser parser = IPMFileParser.getFileParser(layout(i));
+
+                results.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return new IPMFile("test.ipm", bytes, parser).xml();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < FILES; i++) {
+                assertThat(results.get(i).get(), is(equalTo(expected.get(i))));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static byte[] file(int i) throws Exception {
+        final int transactions = 20 + (i * 7) % 150;
+
+        switch (i % 4) {
+            case 0:
+                return IPMFileFixture.ebcdic(transactions);
+            case 1:
+                return IPMFileFixture.rdw(transactions);
+            case 2:
+                return IPMFileFixture.blocked(transactions);
+            default:
+                return IPMFileFixture.preEdit(transactions);
+        }
+    }
+
+    private static ISOLayout layout(int i) {
+        return (i % 4 == 3) ? ISOLayout.MASTERCARD_ASCII : ISOLayout.MASTERCARD_EBCDIC;
+    }
+
+}
@@ -0,0 +1,104 @@
+package org.versates.ipm.parser;
+
+import org.versates.ipm.IPMFile;
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.iso.ISOTransaction;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.jpos.iso.ISOMsg;
+import org.jpos.iso.ISOPackager;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMFilterTest {
+
+    private static final int TRANSACTIONS = 30;
+
+    @Test
+    public void testMtiAndFunctionCode() throws Exception {
+        final byte[] bytes = IPMFileFixture.rdw(messages(ISOLayout.MASTERCARD_EBCDIC));
+        final IPMFile presentments = new IPMFile("test.ipm", bytes,
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, IPMFilter.ALL.withMtis("1240")));
+        final IPMFile chargebacks = new IPMFile("test.ipm", bytes,
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC, IPMFilter.ALL.withFunctionCodes("450")));
+
+        assertThat(presentments.countTransactions(), is(equalTo(20)));
+        assertThat(presentments.header().de(24).value(), is(equalTo("697")));
+        assertThat(presentments.footer().de(24).value(), is(equalTo("695")));
+        assertThat(chargebacks.countTransactions(), is(equalTo(10)));
+
+        for (ISOTransaction transaction : chargebacks.transactions()) {
+            assertThat(transaction.mti(), is(equalTo("1442")));
+        }
+    }
+
+    @Test
+    public void testParallelRecords() throws Exception {
+        final IPMFile file = new IPMFile("test.ipm", IPMBuffer.wrap(IPMFileFixture.rdw(messages(
+                ISOLayout.MASTERCARD_EBCDIC))), IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC,
+                IPMFilter.ALL.withMtis("1442").withFunctionCodes("450")), new ForkJoinPool(2));
+
+        assertThat(file.countTransactions(), is(equalTo(10)));
+        assertThat(file.transactions().get(0).de(63).value(), is(equalTo("0000000000000003")));
+        assertThat(file.footer().de(24).value(), is(equalTo("695")));
+    }
+
+    @Test
+    public void testProjection() throws Exception {
+        final IPMFile file = new IPMFile("test.ipm", IPMFileFixture.rdw(5), IPMFileParser.createFileParser(
+                ISOLayout.MASTERCARD_EBCDIC, IPMFilter.ALL.withFields(4, 48)));
+        final ISOTransaction transaction = file.transactions().get(0);
+
+        assertThat(file.countTransactions(), is(equalTo(5)));
+        assertThat(transaction.de(4).value(), is(equalTo("000000000199")));
+        assertThat(transaction.pds(148).value(), is(equalTo("9862")));
+        assertThat(transaction.hasDe(2), is(false));
+        assertThat(transaction.hasDe(49), is(false));
+        assertThat(transaction.hasDe(63), is(true));
+    }
+
+    @Test
+    public void testPreEdit() throws Exception {
+        final IPMFile file = new IPMFile("test.ipm", IPMFileFixture.preEdit(messages(ISOLayout.MASTERCARD_ASCII)),
+                IPMFileParser.createFileParser(ISOLayout.MASTERCARD_ASCII, IPMFilter.ALL.withFunctionCodes("200")
+                        .withFields(2)));
+
+        assertThat(file.countTransactions(), is(equalTo(20)));
+        assertThat(file.transactions().get(1).de(2).value(), is(equalTo("5500000000000002")));
+        assertThat(file.transactions().get(1).hasDe(4), is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidValue() {
+        IPMFilter.ALL.withMtis("1240", " ");
+    }
+
+    private static List<byte[]> messages(ISOLayout layout) throws Exception {
+        final ISOPackager packager = IPMFileParser.createFileParser(layout).getPackager();
+        final List<byte[]> messages = new ArrayList<byte[]>();
+
+        messages.add(IPMFileFixture.header(packager).pack());
+
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            final ISOMsg transaction = IPMFileFixture.transaction(packager, i);
+
+            if (i % 3 == 0) {
+                transaction.setMTI("1442");
+                transaction.set(24, "450");
+            }
+
+            messages.add(transaction.pack());
+        }
+
+        messages.add(IPMFileFixture.footer(packager, TRANSACTIONS).pack());
+
+        return messages;
+    }
+
+}
@@ -0,0 +1,164 @@
+package org.versates.ipm.parser;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.helper.XMLConversor;
+import org.versates.ipm.iso.packager.ISOLayout;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class IPMInflaterChannelTest {
+
+    private static final int TRANSACTIONS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testGzip() throws Exception {
+        final byte[] bytes = IPMFileFixture.rdw(TRANSACTIONS);
+
+        assertThat(bytes.length > 2 * IPMInflaterChannel.CHUNK_LENGTH, is(true));
+        assertThat(read(IPMInflaterChannel.of(new ByteArrayInputStream(gzip(bytes)))), is(equalTo(bytes)));
+        assertThat(count(new ByteArrayInputStream(gzip(bytes))), is(equalTo(TRANSACTIONS)));
+    }
+
+    @Test
+    public void testZip() throws Exception {
+        final byte[] bytes = IPMFileFixture.rdw(TRANSACTIONS);
+
+        assertThat(read(IPMInflaterChannel.of(new ByteArrayInputStream(zip(bytes)))), is(equalTo(bytes)));
+        assertThat(count(new ByteArrayInputStream(zip(bytes))), is(equalTo(TRANSACTIONS)));
+    }
+
+    @Test
+    public void testPlain() throws Exception {
+        final byte[] bytes = IPMFileFixture.rdw(10);
+
+        assertThat(read(IPMInflaterChannel.of(new ByteArrayInputStream(bytes))), is(equalTo(bytes)));
+        assertThat(read(IPMInflaterChannel.of(new ByteArrayInputStream(new byte[] {0x1F}))),
+                is(equalTo(new byte[] {0x1F})));
+    }
+
+    @Test
+    public void testArchivedFiles() throws Exception {
+        final byte[] bytes = IPMFileFixture.rdw(200);
+        final File raw = write("file.ipm", bytes);
+        final String xml = XMLConversor.xml(raw.getPath(), ISOLayout.MASTERCARD_EBCDIC);
+
+        assertThat(XMLConversor.xml(write("file.ipm.gz", gzip(bytes)).getPath(), ISOLayout.MASTERCARD_EBCDIC)
+                .replace(".ipm.gz", ".ipm"), is(equalTo(xml)));
+        assertThat(XMLConversor.xml(write("file.ipm.zip", zip(bytes)).getPath(), ISOLayout.MASTERCARD_EBCDIC)
+                .replace(".ipm.zip", ".ipm"), is(equalTo(xml)));
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedArchive() throws Exception {
+        final byte[] archive = gzip(IPMFileFixture.rdw(TRANSACTIONS));
+        read(IPMInflaterChannel.of(new ByteArrayInputStream(Arrays.copyOf(archive, archive.length / 2))));
+    }
+
+    @Test(timeout = 10000)
+    public void testFailingArchive() throws Exception {
+        final byte[] archive = gzip(IPMFileFixture.rdw(TRANSACTIONS));
+        final InputStream in = new ByteArrayInputStream(archive) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                if (pos > archive.length / 2) {
+                    throw new IllegalStateException("failing archive");
+                }
+
+                return super.read(b, off, Math.min(len, 512));
+            }
+        };
+
+        try {
+            read(IPMInflaterChannel.of(in));
+            fail();
+        } catch (IOException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+    }
+
+    private static int count(InputStream in) throws IOException {
+        final IPMReader reader = new IPMReader(in, IPMFileParser.createFileParser(ISOLayout.MASTERCARD_EBCDIC));
+        int count = 0;
+
+        try {
+            while (reader.hasNext()) {
+                reader.next();
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+
+        return count;
+    }
+
+    private static byte[] read(IPMInflaterChannel channel) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ByteBuffer buffer = ByteBuffer.allocate(10000);
+
+        try {
+            while (channel.read(buffer) >= 0) {
+                bytes.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        final OutputStream out = new GZIPOutputStream(archive);
+        out.write(bytes);
+        out.close();
+
+        return archive.toByteArray();
+    }
+
+    private static byte[] zip(byte[] bytes) throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        final ZipOutputStream out = new ZipOutputStream(archive);
+        out.putNextEntry(new ZipEntry("file.ipm"));
+        out.write(bytes);
+        out.closeEntry();
+        out.close();
+
+        return archive.toByteArray();
+    }
+
+    private File write(String name, byte[] bytes) throws IOException {
+        final File file = folder.newFile(name);
+        final OutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+
+        return file;
+    }
+
+}
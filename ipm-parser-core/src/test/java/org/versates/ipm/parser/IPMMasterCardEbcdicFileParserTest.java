@@ -0,0 +1,96 @@
+package org.versates.ipm.parser;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.IPMReader;
+import org.versates.ipm.iso.ISOMessage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IPMMasterCardEbcdicFileParserTest {
+
+    private final IPMFileParser parser = IPMFileParser.createMasterCardEbcdicFileParser();
+
+    @Test
+    public void testRdwRecords() throws Exception {
+        assertSameMessages(parser.parse(IPMFileFixture.rdw(300)), parser.parse(IPMFileFixture.ebcdic(300)));
+    }
+
+    @Test
+    public void testBlockedRecords() throws Exception {
+        assertSameMessages(parser.parse(IPMFileFixture.blocked(300)), parser.parse(IPMFileFixture.ebcdic(300)));
+    }
+
+    @Test
+    public void testStreamingBlockedRecords() throws Exception {
+        final IPMReader reader = new IPMReader(new ByteArrayInputStream(IPMFileFixture.blocked(300)), parser);
+        int count = 0;
+
+        while (reader.hasNext()) {
+            assertThat(reader.next().de(63).number(), is(equalTo((long) ++count)));
+        }
+
+        assertThat(count, is(equalTo(300)));
+        assertThat(reader.footer().de(24).value(), is(equalTo("695")));
+    }
+
+    @Test
+    public void testScanSkipsFiller() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for (byte[] message : IPMFileFixture.messages(300)) {
+            out.write(new byte[]{0x40, 0x40, 0x00, 0x00, 0x40, 0x00, (byte) 0xF1});
+            out.write(message);
+        }
+
+        assertSameMessages(parser.parse(out.toByteArray()), parser.parse(IPMFileFixture.ebcdic(300)));
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        final byte[] bytes = IPMFileFixture.blocked(300);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+
+        assertSameMessages(parser.parse(buffer), parser.parse(IPMFileFixture.ebcdic(300)));
+    }
+
+    @Test
+    public void testMappedWindows() throws Exception {
+        final File file = File.createTempFile("ipm", ".ipm");
+        file.deleteOnExit();
+
+        final FileOutputStream out = new FileOutputStream(file);
+        out.write(IPMFileFixture.blocked(300));
+        out.close();
+
+        final RandomAccessFile input = new RandomAccessFile(file, "r");
+
+        try {
+            assertSameMessages(parser.parse(IPMBuffer.map(input.getChannel(), 4096)),
+                    parser.parse(IPMFileFixture.ebcdic(300)));
+        } finally {
+            input.close();
+        }
+    }
+
+    private void assertSameMessages(List<ISOMessage> actual, List<ISOMessage> expected) throws Exception {
+        assertThat(actual.size(), is(equalTo(expected.size())));
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.get(i).isCorrupted(), is(equalTo(false)));
+            assertThat(actual.get(i).pack(), is(equalTo(expected.get(i).pack())));
+        }
+    }
+
+}
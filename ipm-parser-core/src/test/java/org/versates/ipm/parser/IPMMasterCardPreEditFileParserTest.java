@@ -0,0 +1,76 @@
+package org.versates.ipm.parser;
+
+import org.versates.ipm.IPMFileFixture;
+import org.versates.ipm.iso.ISOMessage;
+import org.versates.ipm.iso.ISOTransaction;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class IPMMasterCardPreEditFileParserTest {
+
+    private static final int CAPACITY = 4096;
+    private static final int TRANSACTIONS = 20000;
+
+    private final IPMFileParser parser = IPMFileParser.createMasterCardPreEditFileParser();
+
+    @Test
+    public void testParseLargeFileInBoundedWindow() throws Exception {
+        final byte[] bytes = IPMFileFixture.preEdit(TRANSACTIONS);
+        final IPMBuffer buffer = IPMBuffer.of(Channels.newChannel(new ByteArrayInputStream(bytes)), CAPACITY);
+
+        assertThat(parser.next(buffer).isCorrupted(), is(false));
+
+        final int window = buffer.array().length;
+        int count = 1;
+
+        for (ISOMessage message = parser.next(buffer); message != null; message = parser.next(buffer)) {
+            assertThat(message.isCorrupted(), is(false));
+            assertThat(buffer.array().length, is(equalTo(window)));
+            count++;
+        }
+
+        assertThat(count, is(equalTo(TRANSACTIONS + 2)));
+        assertThat(window, is(lessThan(bytes.length / 100)));
+    }
+
+    @Test
+    public void testUnpack() throws Exception {
+        final List<byte[]> messages = IPMFileFixture.messages(parser.getPackager(), 3);
+        final byte[] record = messages.get(2);
+        final byte[] bytes = new byte[record.length + 10];
+        System.arraycopy(record, 0, bytes, 5, record.length);
+
+        final ISOTransaction transaction = new ISOTransaction(parser.unpack(bytes, 5, record.length));
+
+        assertThat(transaction.isCorrupted(), is(false));
+        assertThat(transaction.mti(), is(equalTo("1240")));
+        assertThat(transaction.de(63).number(), is(equalTo(2L)));
+        assertThat(transaction.pds(148).value(), is(equalTo("9862")));
+    }
+
+    @Test
+    public void testUnpackCorruptedRecord() throws Exception {
+        final ISOMessage message = parser.unpack("1240XXXXXXXXXXXXXXXXXXXX".getBytes("ISO-8859-1"), 0, 24);
+
+        assertThat(message.isCorrupted(), is(true));
+    }
+
+    @Test
+    public void testUnpackFilteredRecord() throws Exception {
+        final IPMFileParser filtered = IPMFileParser.createFileParser(parser.getLayout(),
+                IPMFilter.ALL.withMtis("1442"));
+        final byte[] record = IPMFileFixture.messages(parser.getPackager(), 1).get(1);
+
+        assertThat(filtered.unpack(record, 0, record.length), is(nullValue()));
+    }
+
+}